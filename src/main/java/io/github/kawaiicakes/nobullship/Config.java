@@ -9,8 +9,9 @@ import java.util.List;
 public class Config {
     public static ForgeConfigSpec CONFIG;
 
+    public static ForgeConfigSpec.IntValue PARALLEL_SEARCH_VOLUME, STAGED_REMOVAL_VOLUME, REMOVAL_BUDGET;
     public static ForgeConfigSpec.DoubleValue COOLDOWN_MULTIPLIER, MINIMUM_COOLDOWN, MAXIMUM_COOLDOWN, DROP_RAW_PERCENT;
-    public static ForgeConfigSpec.BooleanValue DISABLE_DROP, DROP_RAW, DISABLE_GLOBAL_COOLDOWN;
+    public static ForgeConfigSpec.BooleanValue DISABLE_DROP, DROP_RAW, DISABLE_GLOBAL_COOLDOWN, ASYNC_MATCHING, TRACK_STRUCTURES;
     public static ForgeConfigSpec.ConfigValue<List<? extends String>> DROP_WHITELIST, DROP_BLACKLIST;
 
     static {
@@ -60,6 +61,40 @@ public class Config {
                 .comment("Default true.")
                 .define("disable_global_cooldown", false);
 
+        ASYNC_MATCHING = builder
+                .comment("If enabled, structures are searched for off the main thread and spawned a few ticks later.")
+                .comment("Everything is checked again on the main thread before the structure is consumed.")
+                .translation("config.nobullship.async_matching")
+                .comment("Default false.")
+                .define("async_matching", false);
+
+        TRACK_STRUCTURES = builder
+                .comment("If enabled, remembers which blocks of a structure are in place around clicked schematic blocks.")
+                .comment("Clicking the same schematic block again then only checks blocks which may have changed.")
+                .translation("config.nobullship.track_structures")
+                .comment("Default false.")
+                .define("track_structures", false);
+
+        PARALLEL_SEARCH_VOLUME = builder
+                .comment("Structures of at least this many blocks, air included, are searched for on several threads at once.")
+                .comment("Set to 0 to always search on a single thread.")
+                .translation("config.nobullship.parallel_search_volume")
+                .comment("Default 0.")
+                .defineInRange("parallel_search_volume", 0, 0, Integer.MAX_VALUE);
+
+        STAGED_REMOVAL_VOLUME = builder
+                .comment("Structures of at least this many blocks are cleared over several ticks, and their result spawned once they are gone.")
+                .comment("Blocks within such a structure can't be placed or broken until it is cleared. Set to 0 to always clear structures at once.")
+                .translation("config.nobullship.staged_removal_volume")
+                .comment("Default 0.")
+                .defineInRange("staged_removal_volume", 0, 0, Integer.MAX_VALUE);
+
+        REMOVAL_BUDGET = builder
+                .comment("How many microseconds a tick may be spent clearing structures over several ticks. Ignored if staged_removal_volume is 0.")
+                .translation("config.nobullship.removal_budget")
+                .comment("Default 2000.")
+                .defineInRange("removal_budget", 2000, 100, 50000);
+
         DROP_WHITELIST = builder
                 .comment("Acts as a whitelist for drops if an item you needed was removed by default_drops.")
                 .translation("config.nobullship.drop_whitelist")
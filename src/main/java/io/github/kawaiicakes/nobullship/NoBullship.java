@@ -7,11 +7,13 @@ import io.github.kawaiicakes.nobullship.api.*;
 import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipeProvider;
 import io.github.kawaiicakes.nobullship.api.schematic.SchematicRecipeProvider;
 import io.github.kawaiicakes.nobullship.event.BullshipEvents;
+import io.github.kawaiicakes.nobullship.multiblock.MismatchHighlighter;
 import io.github.kawaiicakes.nobullship.multiblock.SchematicRenderer;
 import io.github.kawaiicakes.nobullship.multiblock.block.MultiblockWorkshopBlockEntity;
 import io.github.kawaiicakes.nobullship.multiblock.screen.EmptyScreen;
 import io.github.kawaiicakes.nobullship.multiblock.screen.MultiblockWorkshopScreen;
 import io.github.kawaiicakes.nobullship.multiblock.screen.SaveSelectionScreen;
+import io.github.kawaiicakes.nobullship.network.ClientboundRecipeDeltaPacket;
 import io.github.kawaiicakes.nobullship.network.ClientboundUpdateNoBullshipPacket;
 import io.github.kawaiicakes.nobullship.network.NoBullshipPackets;
 import io.github.kawaiicakes.nobullship.particle.ItemMarker;
@@ -135,7 +137,15 @@ public class NoBullship
 
     @SubscribeEvent
     public void onDatapackSync(OnDatapackSyncEvent event) {
-        NoBullshipPackets.sendToPlayer(new ClientboundUpdateNoBullshipPacket(MultiblockRecipeManager.getInstance()), event.getPlayer());
+        MultiblockRecipeManager manager = MultiblockRecipeManager.getInstance();
+        // A null player means everyone is being synced after a reload; everyone already has the recipes from before it
+        if (event.getPlayer() == null) {
+            NoBullshipPackets.sendToPlayer(new ClientboundRecipeDeltaPacket(manager), null);
+            manager.markSynced();
+            return;
+        }
+
+        NoBullshipPackets.sendToPlayer(new ClientboundUpdateNoBullshipPacket(manager), event.getPlayer());
     }
 
     @SubscribeEvent
@@ -169,6 +179,8 @@ public class NoBullship
             if (Minecraft.getInstance().level == null) return;
             if (!event.getStage().equals(RenderLevelStageEvent.Stage.AFTER_SOLID_BLOCKS)) return;
 
+            MismatchHighlighter.render(event);
+
             ItemStack itemInHand = Minecraft.getInstance().player.getItemInHand(InteractionHand.MAIN_HAND);
             if (!itemInHand.is(MAGIC_WAND_ITEM.get())) return;
 
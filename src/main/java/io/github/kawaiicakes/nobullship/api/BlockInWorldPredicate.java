@@ -1,41 +1,61 @@
 package io.github.kawaiicakes.nobullship.api;
 
 import com.mojang.logging.LogUtils;
-import io.github.kawaiicakes.nobullship.schematic.SchematicRecipe;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.core.Direction;
-import net.minecraft.core.NonNullList;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.IntTag;
 import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.resources.ResourceLocation;
-import net.minecraft.tags.BlockTags;
 import net.minecraft.tags.TagKey;
+import net.minecraft.world.Container;
 import net.minecraft.world.item.ItemStack;
-import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.item.Items;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.Rotation;
 import net.minecraft.world.level.block.StairBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraft.world.level.block.entity.RandomizableContainerBlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.pattern.BlockInWorld;
 import net.minecraft.world.level.block.state.properties.Property;
 import net.minecraft.world.level.block.state.properties.StairsShape;
+import net.minecraftforge.common.capabilities.ForgeCapabilities;
+import net.minecraftforge.items.IItemHandler;
 import net.minecraftforge.registries.ForgeRegistries;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import static io.github.kawaiicakes.nobullship.multiblock.MultiblockPattern.CARDINAL;
 
 /**
  * This is a <code>Predicate</code> implementation allowing for dynamic checking of rotations in directional
- * properties. An instance is used and <code>#setFacing</code> is called to rotate the accepted direction values
- * from the original.
+ * properties. Instances are immutable; <code>#setFacing</code> returns a view of the same predicate facing the
+ * given direction, and <code>#testState</code> takes the facing as an argument so that a single instance may be
+ * shared between every rotation of a pattern.
  */
 public class BlockInWorldPredicate implements Predicate<BlockInWorld> {
     protected static final Logger LOGGER = LogUtils.getLogger();
+    protected static final Map<StairsShape, StairsShape> MIRRORED_STAIRS_SHAPES = new EnumMap<>(Map.of(
+            StairsShape.INNER_LEFT, StairsShape.INNER_RIGHT,
+            StairsShape.INNER_RIGHT, StairsShape.INNER_LEFT,
+            StairsShape.OUTER_LEFT, StairsShape.OUTER_RIGHT,
+            StairsShape.OUTER_RIGHT, StairsShape.OUTER_LEFT
+    ));
+    /**
+     * Every stairs state seen so far mapped to its visually-identical counterpart, or to itself if it has none.
+     */
+    protected static final Map<BlockState, BlockState> STAIRS_COUNTERPARTS = new ConcurrentHashMap<>();
     public static final BlockInWorldPredicate WILDCARD = new BlockInWorldPredicate(Blocks.AIR, null, null, null, null, null, null) {
         @Override
         public BlockInWorldPredicate setFacing(Direction direction) {
@@ -46,6 +66,16 @@ public class BlockInWorldPredicate implements Predicate<BlockInWorld> {
         public boolean test(BlockInWorld blockInWorld) {
             return true;
         }
+
+        @Override
+        public boolean testState(BlockState state, Direction facing) {
+            return true;
+        }
+
+        @Override
+        public boolean acceptsBlock(BlockState state) {
+            return true;
+        }
     };
     public static final BlockInWorldPredicate AIR = new BlockInWorldPredicate(Blocks.AIR, null, null, null, null, null, null) {
         @Override
@@ -57,9 +87,35 @@ public class BlockInWorldPredicate implements Predicate<BlockInWorld> {
         public boolean test(BlockInWorld blockInWorld) {
             return blockInWorld.getState().isAir();
         }
+
+        @Override
+        public boolean testState(BlockState state, Direction facing) {
+            return state.isAir();
+        }
+
+        @Override
+        public boolean acceptsBlock(BlockState state) {
+            return state.isAir();
+        }
+
+        @Override
+        public ItemStack getDisplayStack() {
+            return Items.BARRIER.getDefaultInstance();
+        }
     };
 
-    protected Direction facing;
+    /**
+     * Counts how many times tags have been reloaded. Predicates outlive a reload when their recipe file hasn't
+     * changed, so states compiled from a tag under an earlier generation are compiled again on next use.
+     */
+    protected static final AtomicInteger TAG_GENERATION = new AtomicInteger();
+
+    protected final Direction facing;
+    /**
+     * The predicate owning the compiled states. This is the predicate itself unless it was created by
+     * <code>#setFacing</code>, in which case compiled states are shared with the original.
+     */
+    protected final BlockInWorldPredicate compiledFrom;
     @Nullable
     protected final Block block;
     @Nullable
@@ -74,6 +130,19 @@ public class BlockInWorldPredicate implements Predicate<BlockInWorld> {
     protected final CompoundTag blockEntityNbtData;
     @Nullable
     protected final CompoundTag blockEntityNbtDataStrict;
+    /**
+     * <code>#blockEntityNbtData</code> and <code>#blockEntityNbtDataStrict</code> in the form they are checked in.
+     * Null if neither is present.
+     */
+    @Nullable
+    protected final BlockEntityRequirement blockEntityRequirement;
+    /**
+     * Every <code>BlockState</code> satisfying this predicate save for NBT, indexed by
+     * <code>Direction#get2DDataValue</code> of the facing it was compiled for. Compiled on first use rather than
+     * on construction as block tags have not been bound yet while recipes are being loaded.
+     */
+    @Nullable
+    protected volatile CompiledStates compiledStates;
 
     /**
      * Creates a new <code>BlockInWorldPredicate</code> facing the given direction. Any directional properties
@@ -90,238 +159,258 @@ public class BlockInWorldPredicate implements Predicate<BlockInWorld> {
         this.properties = properties;
         this.blockEntityNbtData = blockEntityNbtData;
         this.blockEntityNbtDataStrict = blockEntityNbtDataStrict;
+        this.blockEntityRequirement = blockEntityNbtData != null || blockEntityNbtDataStrict != null
+                ? new BlockEntityRequirement(blockEntityNbtData, blockEntityNbtDataStrict)
+                : null;
         this.facing = Direction.SOUTH;
+        this.compiledFrom = this;
+    }
+
+    /**
+     * Creates a view of <code>original</code> facing the given direction.
+     */
+    protected BlockInWorldPredicate(BlockInWorldPredicate original, Direction facing) {
+        this.block = original.block;
+        this.blockState = original.blockState;
+        this.blockTag = original.blockTag;
+        this.blockId = original.blockId;
+        this.properties = original.properties;
+        this.blockEntityNbtData = original.blockEntityNbtData;
+        this.blockEntityNbtDataStrict = original.blockEntityNbtDataStrict;
+        this.blockEntityRequirement = original.blockEntityRequirement;
+        this.facing = facing;
+        this.compiledFrom = original.compiledFrom;
     }
 
+    /**
+     * Returns a predicate identical to this one save for facing the given direction. This instance is not modified.
+     */
     public BlockInWorldPredicate setFacing(Direction direction) {
         if (!Arrays.asList(CARDINAL).contains(direction)) throw new IllegalArgumentException(direction + " is an invalid Direction!");
-        if (this.blockState != null) return this;
-        this.facing = direction;
-        return this;
+        if (this.blockState != null || this.facing == direction) return this;
+        return new BlockInWorldPredicate(this, direction);
     }
 
     @Override
     public boolean test(BlockInWorld blockInWorld) {
-        Predicate<BlockInWorld> basicTest = this.getBasic();
-        Predicate<BlockInWorld> propertiesPredicate = checkProperties(this.properties, this.facing);
-        Predicate<BlockInWorld> nbtPredicateStrict = checkNbtMatch(this.blockEntityNbtDataStrict);
-        Predicate<BlockInWorld> nbtPredicate = checkSoftNbtMatch(this.blockEntityNbtData);
-
-        if (this.blockState != null) return basicTest.test(blockInWorld)
-                && nbtPredicateStrict.test(blockInWorld)
-                && nbtPredicate.test(blockInWorld);
-        return basicTest.test(blockInWorld)
-                && propertiesPredicate.test(blockInWorld)
-                && nbtPredicateStrict.test(blockInWorld)
-                && nbtPredicate.test(blockInWorld);
+        BlockState state = blockInWorld.getState();
+        //noinspection ConstantValue (BlockInWorld returns null for unloaded positions)
+        if (state == null || !this.testState(state, this.facing)) return false;
+        return this.testBlockEntity(blockInWorld.getEntity());
     }
 
-    protected Predicate<BlockInWorld> getBasic() {
-        if (this.block != null) return BlockInWorld.hasState(state -> state.is(this.block));
-        else if (this.blockState != null) return (blockInWorld) -> {
-            // FIXME: this temporary fix for accepting visually-identical stairs
-            if (!blockInWorld.getState().is(BlockTags.STAIRS)) return blockInWorld.getState().equals(this.blockState);
-            if (this.blockState.equals(blockInWorld.getState())) return true;
-
-            Direction currentFacing = blockInWorld.getState().getValue(StairBlock.FACING);
-            StairsShape currentShape = blockInWorld.getState().getValue(StairBlock.SHAPE);
+    /**
+     * The first stage of <code>#test</code>. Checks the passed <code>BlockState</code> against everything this
+     * predicate stipulates save for NBT data, as if the pattern were facing the passed <code>Direction</code>. This
+     * is a single set lookup once the predicate has been compiled.
+     */
+    public boolean testState(BlockState state, Direction facing) {
+        return this.getCompiledStates()[facing.get2DDataValue()].contains(state);
+    }
 
-            if (currentShape.equals(StairsShape.STRAIGHT)) return false;
+    /**
+     * The exact <code>BlockState</code> this predicate requires if that is all it requires, otherwise null.
+     */
+    @Nullable
+    public BlockState getExactState() {
+        if (this.blockEntityRequirement != null) return null;
+        return this.blockState;
+    }
 
-            Direction newFacing = getNewStairsFacing(currentShape, currentFacing);
-            StairsShape newShape = switch (currentShape) {
-                case STRAIGHT -> throw new RuntimeException();
-                case INNER_LEFT -> StairsShape.INNER_RIGHT;
-                case INNER_RIGHT -> StairsShape.INNER_LEFT;
-                case OUTER_LEFT -> StairsShape.OUTER_RIGHT;
-                case OUTER_RIGHT -> StairsShape.OUTER_LEFT;
-            };
+    /**
+     * Whether <code>#testBlockEntity</code> needs to be called at all for this predicate to pass.
+     */
+    public boolean requiresBlockEntity() {
+        return this.blockEntityRequirement != null;
+    }
 
-            BlockState identicalCounterpart = blockInWorld.getState();
-            identicalCounterpart = identicalCounterpart.setValue(StairBlock.FACING, newFacing);
-            identicalCounterpart = identicalCounterpart.setValue(StairBlock.SHAPE, newShape);
+    /**
+     * The second stage of <code>#test</code>. Only meaningful for a position which has already passed
+     * <code>#testState</code>.
+     */
+    public boolean testBlockEntity(@Nullable BlockEntity blockEntity) {
+        if (this.blockEntityRequirement == null) return true;
+        if (blockEntity == null) return false;
+
+        try {
+            return this.blockEntityRequirement.test(blockEntity);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unexpected error while checking NBT of {}!", blockEntity, e);
+            return false;
+        }
+    }
 
-            return this.blockState.equals(identicalCounterpart);
-        };
-        else if (this.blockTag != null) return (blockInWorld) -> blockInWorld.getState().is(this.blockTag);
-        else if (this.blockId != null) return (blockInWorld) -> {
-            // exists in case for some reason the builder screws up and ends up leaving $block null
-            ResourceLocation rl = ForgeRegistries.BLOCKS.getKey(blockInWorld.getState().getBlock());
-            if (rl == null) return false;
-            return rl.equals(this.blockId);
-        };
-        else throw new RuntimeException();
+    /**
+     * A cheap test of whether the <code>Block</code> of the passed <code>BlockState</code> could ever satisfy this
+     * predicate. Properties, rotation and NBT are not considered, so a return of true does not imply
+     * <code>#test</code> will pass; a return of false does imply it won't for any facing.
+     */
+    public boolean acceptsBlock(BlockState state) {
+        if (this.block != null) return state.is(this.block);
+        else if (this.blockState != null) return state.is(this.blockState.getBlock());
+        else if (this.blockTag != null) return state.is(this.blockTag);
+        else if (this.blockId != null) return this.blockId.equals(ForgeRegistries.BLOCKS.getKey(state.getBlock()));
+        return false;
     }
 
-    protected static Predicate<BlockInWorld> checkProperties(@Nullable Map<String, Set<String>> properties, Direction facing) {
-        if (properties == null || properties.isEmpty()) return (block) -> true;
+    /**
+     * Returns true if which blockstates this predicate accepts depends on the facing of the pattern. Only predicates
+     * naming properties do; an exact blockstate is matched as-is whichever way the pattern faces.
+     */
+    public boolean isRotationDependent() {
+        return this.blockState == null && this.properties != null && !this.properties.isEmpty();
+    }
 
-        Rotation rotationToNorth = rotationToNorth(facing);
+    /**
+     * Returns an item standing in for what this predicate accepts, for showing a player what belongs somewhere. For a
+     * tag, this is the item of its first block. Empty if there is no such item.
+     */
+    public ItemStack getDisplayStack() {
+        Block displayed = null;
+        if (this.block != null) displayed = this.block;
+        else if (this.blockState != null) displayed = this.blockState.getBlock();
+        else if (this.blockTag != null) {
+            displayed = Objects.requireNonNull(ForgeRegistries.BLOCKS.tags()).getTag(this.blockTag).stream().findFirst().orElse(null);
+        }
+        else if (this.blockId != null) displayed = ForgeRegistries.BLOCKS.getValue(this.blockId);
 
-        return (block) -> {
-            boolean toReturn = true;
-            // I don't know if this cast is fine...
-            BlockState rotatedState = block.getState().rotate((LevelAccessor) block.getLevel(), block.getPos(), rotationToNorth);
+        if (displayed == null) return ItemStack.EMPTY;
+        return displayed.asItem().getDefaultInstance();
+    }
 
-            for (Map.Entry<String, Set<String>> entry : properties.entrySet()) {
-                Property<?> propertyOfBlockInWorld;
-
-                try {
-                    propertyOfBlockInWorld = rotatedState.getValues()
-                            .keySet()
-                            .stream()
-                            .filter(property -> property.getName().equals(entry.getKey()))
-                            .findFirst()
-                            .orElseThrow();
-                } catch (IllegalArgumentException | NoSuchElementException e) {
-                    // These errors are expected if the property is not found in the blockstate. No message is necessary
-                    return false;
-                } catch (RuntimeException e) {
-                    LOGGER.error("Unexpected error while checking properties!", e);
-                    LOGGER.error(e.getMessage());
-                    return false;
-                }
+    protected Set<BlockState>[] getCompiledStates() {
+        if (this.compiledFrom != this) return this.compiledFrom.getCompiledStates();
+        CompiledStates compiled = this.compiledStates;
+        int generation = TAG_GENERATION.get();
+        if (compiled == null || (this.blockTag != null && compiled.generation() != generation)) {
+            compiled = new CompiledStates(generation, this.compile());
+            this.compiledStates = compiled;
+        }
+        return compiled.states();
+    }
 
-                String valueAtPropertyOfBlockInWorld;
-                try {
-                    valueAtPropertyOfBlockInWorld = rotatedState.getValue(propertyOfBlockInWorld).toString();
-                } catch (RuntimeException e) {
-                    LOGGER.error("Exception encountered!", e);
-                    LOGGER.error("Error while determining value at property {} of block {}!", entry.getKey(), block.getPos());
-                    LOGGER.error(e.getMessage());
-                    return false;
-                }
+    /**
+     * Marks the states of every predicate naming a tag as stale. Call whenever tags are reloaded.
+     */
+    public static void invalidateTagStates() {
+        TAG_GENERATION.incrementAndGet();
+    }
 
-                if (!entry.getValue().contains(valueAtPropertyOfBlockInWorld)) {
-                    toReturn = false;
-                    break;
-                }
+    /**
+     * Enumerates every possible <code>BlockState</code> of every <code>Block</code> this predicate could accept and
+     * keeps those passing <code>#matchesState</code> for each cardinal direction. Predicates whose result can't
+     * depend on rotation share a single set between all four directions. Property requirements are resolved once
+     * per candidate <code>Block</code> into a <code>PropertyMatcher</code>; blocks lacking a required property are
+     * skipped outright.
+     */
+    protected Set<BlockState>[] compile() {
+        List<Block> candidates = new ArrayList<>();
+        if (this.block != null) {
+            candidates.add(this.block);
+        } else if (this.blockState != null) {
+            candidates.add(this.blockState.getBlock());
+        } else if (this.blockTag != null) {
+            for (Block blockInTag : Objects.requireNonNull(ForgeRegistries.BLOCKS.tags()).getTag(this.blockTag)) {
+                candidates.add(blockInTag);
             }
+        } else if (this.blockId != null && ForgeRegistries.BLOCKS.containsKey(this.blockId)) {
+            candidates.add(ForgeRegistries.BLOCKS.getValue(this.blockId));
+        }
 
-            // FIXME: intended temp fix for accepting visually-identical stairs
-            if (!toReturn && block.getState().getBlock() instanceof StairBlock && !rotatedState.getValue(StairBlock.SHAPE).equals(StairsShape.STRAIGHT)) {
-                StairsShape oldShape = rotatedState.getValue(StairBlock.SHAPE);
-                Direction oldFacing = rotatedState.getValue(StairBlock.FACING);
-
-                StairsShape newShape = switch (oldShape) {
-                    case STRAIGHT -> throw new RuntimeException();
-                    case INNER_LEFT -> StairsShape.INNER_RIGHT;
-                    case INNER_RIGHT -> StairsShape.INNER_LEFT;
-                    case OUTER_LEFT -> StairsShape.OUTER_RIGHT;
-                    case OUTER_RIGHT -> StairsShape.OUTER_LEFT;
-                };
-                Direction newFacing = getNewStairsFacing(oldShape, oldFacing);
+        boolean rotationDependent = this.isRotationDependent();
 
-                for (Map.Entry<String, Set<String>> entry : properties.entrySet()) {
-                    Property<?> propertyOfBlockInWorld;
+        Map<Block, PropertyMatcher> matchers = new IdentityHashMap<>();
+        if (rotationDependent) {
+            for (Block candidate : candidates) {
+                PropertyMatcher matcher = PropertyMatcher.resolve(candidate, this.properties);
+                if (matcher != null) matchers.put(candidate, matcher);
+            }
+        }
 
-                    try {
-                        propertyOfBlockInWorld = rotatedState.getValues()
-                                .keySet()
-                                .stream()
-                                .filter(property -> property.getName().equals(entry.getKey()))
-                                .findFirst()
-                                .orElseThrow();
-                    } catch (IllegalArgumentException | NoSuchElementException e) {
-                        // These errors are expected if the property is not found in the blockstate. No message is necessary
-                        return false;
-                    } catch (RuntimeException e) {
-                        LOGGER.error("Unexpected error while checking properties!", e);
-                        LOGGER.error(e.getMessage());
-                        return false;
-                    }
+        //noinspection unchecked
+        Set<BlockState>[] toReturn = new Set[CARDINAL.length];
+        Set<BlockState> shared = null;
+        for (Direction direction : CARDINAL) {
+            if (!rotationDependent && shared != null) {
+                toReturn[direction.get2DDataValue()] = shared;
+                continue;
+            }
+
+            Rotation rotation = rotationToNorth(direction);
+            ReferenceOpenHashSet<BlockState> accepted = new ReferenceOpenHashSet<>();
+            for (Block candidate : candidates) {
+                PropertyMatcher matcher = matchers.get(candidate);
+                if (rotationDependent && matcher == null) continue;
 
-                    String valueAtPropertyOfBlockInWorld;
+                for (BlockState state : candidate.getStateDefinition().getPossibleStates()) {
                     try {
-                        if (propertyOfBlockInWorld.getName().equals("facing")) {
-                            valueAtPropertyOfBlockInWorld = newFacing.getSerializedName();
-                        } else if (propertyOfBlockInWorld.getName().equals("shape")) {
-                            valueAtPropertyOfBlockInWorld = newShape.getSerializedName();
-                        } else {
-                            valueAtPropertyOfBlockInWorld = rotatedState.getValue(propertyOfBlockInWorld).toString();
-                        }
+                        if (this.matchesState(state, rotation, matcher)) accepted.add(state);
                     } catch (RuntimeException e) {
-                        LOGGER.error("Exception encountered!", e);
-                        LOGGER.error("Error while determining value at property {} of block {}!", entry.getKey(), block.getPos());
-                        LOGGER.error(e.getMessage());
-                        return false;
-                    }
-
-                    if (!entry.getValue().contains(valueAtPropertyOfBlockInWorld)) {
-                        toReturn = false;
-                        break;
+                        LOGGER.error("Unexpected error while compiling predicate against {}!", state, e);
                     }
-
-                    toReturn = true;
                 }
             }
+            accepted.trim();
 
-            return toReturn;
-        };
-    }
-
-    protected static Predicate<BlockInWorld> checkNbtMatch(@Nullable CompoundTag blockEntityNbtDataStrict) {
-        if (blockEntityNbtDataStrict == null) return block -> true;
-
-        return (block) -> {
-            //noinspection DataFlowIssue ($blockEntityNbtDataStrict being non-null implies the block has an entity.)
-            CompoundTag blockNbt = block.getEntity().saveWithFullMetadata();
-
-            for (String key : blockEntityNbtDataStrict.getAllKeys()) {
-                if (!blockNbt.contains(key)) return false;
-                //noinspection DataFlowIssue
-                if (!blockNbt.get(key).equals(blockEntityNbtDataStrict.get(key))) return false;
-            }
+            toReturn[direction.get2DDataValue()] = accepted;
+            shared = accepted;
+        }
 
-            return true;
-        };
+        return toReturn;
     }
 
     /**
-     * Helper method which generates a <code>{@literal Predicate<BlockInWorld>}</code> which checks for the presence
-     * of NBT data with soft scrutiny. As an example to what the return does, containers need not match the NBT exactly;
-     * only the count of the contents should meet or exceed what is stipulated in NBT.
+     * The uncompiled form of <code>#testState</code>. Only called while compiling. The state is rotated as though
+     * the pattern faced north before its properties are checked.
      */
-    protected static Predicate<BlockInWorld> checkSoftNbtMatch(@Nullable CompoundTag blockEntityNbtData) {
-        if (blockEntityNbtData == null) return block -> true;
+    protected boolean matchesState(BlockState state, Rotation rotation, @Nullable PropertyMatcher matcher) {
+        if (!this.basicMatches(state)) return false;
+        if (this.blockState != null || matcher == null) return true;
 
-        return (block) -> {
-            //noinspection DataFlowIssue ($blockEntityNbtData being non-null implies the block has an entity.)
-            CompoundTag blockNbt = block.getEntity().saveWithFullMetadata();
+        BlockState rotatedState = state.rotate(rotation);
+        if (matcher.matches(rotatedState)) return true;
 
-            for (String key : blockEntityNbtData.getAllKeys()) {
-                if (!key.equals("Items")) {
-                    if (!blockNbt.contains(key)) return false;
-                    //noinspection DataFlowIssue
-                    if (!blockNbt.get(key).equals(blockEntityNbtData.get(key))) return false;
-                    continue;
-                }
-
-                ListTag requirementContents = blockEntityNbtData.getList("Items", Tag.TAG_COMPOUND);
-                if (requirementContents.isEmpty()) return false;
-
-                ListTag containerContents = blockNbt.getList("Items", Tag.TAG_COMPOUND);
-                if (containerContents.isEmpty() && !requirementContents.isEmpty()) return false;
-
-                NonNullList<ItemStack> requirementsAsList = NonNullList.createWithCapacity(requirementContents.size());
-                for (Tag slotTag : requirementContents) {
-                    ItemStack slotStack = ItemStack.of((CompoundTag) slotTag);
-                    requirementsAsList.add(slotStack);
-                }
-                List<ItemStack> summedRequirements = SchematicRecipe.getSummedContents(requirementsAsList);
-
-                NonNullList<ItemStack> contentsAsList = NonNullList.createWithCapacity(containerContents.size());
-                for (Tag slotTag : containerContents) {
-                    ItemStack slotStack = ItemStack.of((CompoundTag) slotTag);
-                    contentsAsList.add(slotStack);
-                }
-                List<ItemStack> summedContents = SchematicRecipe.getSummedContents(contentsAsList);
+        // FIXME: intended temp fix for accepting visually-identical stairs
+        BlockState counterpart = getStairsCounterpart(rotatedState);
+        return counterpart != null && matcher.matches(counterpart);
+    }
 
-                if (!SchematicRecipe.compareSummedContents(summedRequirements, summedContents)) return false;
-            }
+    protected boolean basicMatches(BlockState state) {
+        if (this.block != null) return state.is(this.block);
+        else if (this.blockState != null) {
+            if (state == this.blockState) return true;
+            // FIXME: this temporary fix for accepting visually-identical stairs
+            return getStairsCounterpart(state) == this.blockState;
+        }
+        else if (this.blockTag != null) return state.is(this.blockTag);
+        else if (this.blockId != null) {
+            // exists in case for some reason the builder screws up and ends up leaving $block null
+            ResourceLocation rl = ForgeRegistries.BLOCKS.getKey(state.getBlock());
+            if (rl == null) return false;
+            return rl.equals(this.blockId);
+        }
+        else throw new RuntimeException();
+    }
 
-            return true;
-        };
+    /**
+     * Returns the stairs state which looks identical to the passed one while having a different facing and shape,
+     * or null if there isn't one. Inner and outer corners are each ambiguous between a left-handed shape facing one
+     * way and a right-handed shape facing a perpendicular way. Results are remembered in
+     * <code>#STAIRS_COUNTERPARTS</code>.
+     */
+    @Nullable
+    public static BlockState getStairsCounterpart(BlockState state) {
+        if (!state.hasProperty(StairBlock.FACING) || !state.hasProperty(StairBlock.SHAPE)) return null;
+
+        BlockState counterpart = STAIRS_COUNTERPARTS.computeIfAbsent(state, key -> {
+            StairsShape shape = key.getValue(StairBlock.SHAPE);
+            if (shape == StairsShape.STRAIGHT) return key;
+            return key
+                    .setValue(StairBlock.FACING, getNewStairsFacing(shape, key.getValue(StairBlock.FACING)))
+                    .setValue(StairBlock.SHAPE, MIRRORED_STAIRS_SHAPES.get(shape));
+        });
+
+        return counterpart == state ? null : counterpart;
     }
 
     /**
@@ -358,4 +447,171 @@ public class BlockInWorldPredicate implements Predicate<BlockInWorld> {
             };
         };
     }
+
+    /**
+     * The property requirements of a predicate resolved against a single <code>Block</code>: the actual
+     * <code>Property</code> objects and the actual values accepted for each, in place of names and strings.
+     */
+    protected static class PropertyMatcher {
+        protected final Property<?>[] properties;
+        protected final Set<Comparable<?>>[] acceptedValues;
+
+        @SuppressWarnings("unchecked")
+        protected PropertyMatcher(List<Property<?>> properties, List<Set<Comparable<?>>> acceptedValues) {
+            this.properties = properties.toArray(new Property<?>[0]);
+            this.acceptedValues = acceptedValues.toArray(new Set[0]);
+        }
+
+        /**
+         * Returns null if the passed <code>Block</code> lacks any of the named properties, in which case none of its
+         * states can be accepted.
+         */
+        @Nullable
+        protected static PropertyMatcher resolve(Block block, Map<String, Set<String>> properties) {
+            List<Property<?>> resolvedProperties = new ArrayList<>(properties.size());
+            List<Set<Comparable<?>>> resolvedValues = new ArrayList<>(properties.size());
+
+            for (Map.Entry<String, Set<String>> entry : properties.entrySet()) {
+                Property<?> property = block.getStateDefinition().getProperty(entry.getKey());
+                if (property == null) return null;
+
+                Set<Comparable<?>> values = new ObjectOpenHashSet<>(entry.getValue().size());
+                for (String value : entry.getValue()) {
+                    property.getValue(value).ifPresent(values::add);
+                }
+
+                resolvedProperties.add(property);
+                resolvedValues.add(values);
+            }
+
+            return new PropertyMatcher(resolvedProperties, resolvedValues);
+        }
+
+        protected boolean matches(BlockState state) {
+            for (int i = 0; i < this.properties.length; i++) {
+                if (!this.acceptedValues[i].contains(state.getValue(this.properties[i]))) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Checks a <code>BlockEntity</code> against NBT requirements without serializing it unless it must.
+     * <br><br>
+     * Every key of the strict data, and every key of the soft data besides <code>Items</code>, must be equal to the
+     * same key in the block entity's NBT. The metadata keys <code>id</code>, <code>x</code>, <code>y</code> and
+     * <code>z</code> are computed directly; only other keys require <code>BlockEntity#saveWithoutMetadata</code>,
+     * and then only once.
+     * <br><br>
+     * A soft <code>Items</code> requirement only needs the block entity to contain at least as many of each item.
+     * Contents are counted straight out of a <code>Container</code> or the <code>ITEM_HANDLER</code> capability,
+     * falling back on the serialized <code>Items</code> list for anything else. A
+     * <code>RandomizableContainerBlockEntity</code> is always counted from its serialized form, as reading its slots
+     * would roll its loot; an unopened loot container therefore counts as empty.
+     */
+    protected static class BlockEntityRequirement {
+        protected static final Set<String> METADATA_KEYS = Set.of("id", "x", "y", "z");
+        protected final CompoundTag exact = new CompoundTag();
+        protected final boolean requiresSave;
+        @Nullable
+        protected final ItemMultiset items;
+        protected final boolean impossible;
+
+        protected BlockEntityRequirement(@Nullable CompoundTag soft, @Nullable CompoundTag strict) {
+            boolean impossible = false;
+            ItemMultiset items = null;
+
+            if (strict != null) {
+                for (String key : strict.getAllKeys()) {
+                    //noinspection DataFlowIssue
+                    this.exact.put(key, strict.get(key).copy());
+                }
+            }
+
+            if (soft != null) {
+                for (String key : soft.getAllKeys()) {
+                    if (key.equals("Items")) {
+                        ListTag requirementContents = soft.getList("Items", Tag.TAG_COMPOUND);
+                        items = new ItemMultiset();
+                        for (Tag slotTag : requirementContents) {
+                            items.add(ItemStack.of((CompoundTag) slotTag));
+                        }
+                        if (items.isEmpty()) impossible = true;
+                        continue;
+                    }
+
+                    //noinspection DataFlowIssue
+                    if (this.exact.contains(key) && !this.exact.get(key).equals(soft.get(key))) impossible = true;
+                    //noinspection DataFlowIssue
+                    this.exact.put(key, soft.get(key).copy());
+                }
+            }
+
+            this.items = items;
+            this.impossible = impossible;
+            this.requiresSave = this.exact.getAllKeys().stream().anyMatch(key -> !METADATA_KEYS.contains(key));
+        }
+
+        protected boolean test(BlockEntity blockEntity) {
+            if (this.impossible) return false;
+
+            CompoundTag saved = this.requiresSave ? blockEntity.saveWithoutMetadata() : null;
+            for (String key : this.exact.getAllKeys()) {
+                Tag actual = switch (key) {
+                    case "id" -> {
+                        ResourceLocation id = BlockEntityType.getKey(blockEntity.getType());
+                        yield id == null ? null : StringTag.valueOf(id.toString());
+                    }
+                    case "x" -> IntTag.valueOf(blockEntity.getBlockPos().getX());
+                    case "y" -> IntTag.valueOf(blockEntity.getBlockPos().getY());
+                    case "z" -> IntTag.valueOf(blockEntity.getBlockPos().getZ());
+                    //noinspection DataFlowIssue
+                    default -> saved.get(key);
+                };
+
+                if (!Objects.equals(this.exact.get(key), actual)) return false;
+            }
+
+            if (this.items == null) return true;
+            return countContents(blockEntity, saved).containsAll(this.items);
+        }
+
+        /**
+         * Counts the items held by a block entity. Containers which may still have a loot table are read from their
+         * saved form instead of their slots, as reading a slot would roll the loot into the world; until then they
+         * save no items and so count as empty.
+         */
+        protected static ItemMultiset countContents(BlockEntity blockEntity, @Nullable CompoundTag saved) {
+            ItemMultiset contents = new ItemMultiset();
+
+            // the item handler capability of such a container reads the same slots, so it is skipped too
+            if (!(blockEntity instanceof RandomizableContainerBlockEntity)) {
+                if (blockEntity instanceof Container container) {
+                    for (int i = 0; i < container.getContainerSize(); i++) {
+                        contents.add(container.getItem(i));
+                    }
+                    return contents;
+                }
+
+                IItemHandler handler = blockEntity.getCapability(ForgeCapabilities.ITEM_HANDLER).resolve().orElse(null);
+                if (handler != null) {
+                    for (int i = 0; i < handler.getSlots(); i++) {
+                        contents.add(handler.getStackInSlot(i));
+                    }
+                    return contents;
+                }
+            }
+
+            if (saved == null) saved = blockEntity.saveWithoutMetadata();
+            for (Tag slotTag : saved.getList("Items", Tag.TAG_COMPOUND)) {
+                contents.add(ItemStack.of((CompoundTag) slotTag));
+            }
+            return contents;
+        }
+    }
+
+    /**
+     * The states compiled for a predicate, along with the <code>#TAG_GENERATION</code> they were compiled under.
+     */
+    protected record CompiledStates(int generation, Set<BlockState>[] states) {}
 }
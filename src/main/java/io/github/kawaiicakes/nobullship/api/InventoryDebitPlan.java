@@ -0,0 +1,104 @@
+package io.github.kawaiicakes.nobullship.api;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Works out which slots of a player's inventory pay for a list of requisites, and how much each pays, in a single
+ * pass over the inventory before anything is taken. Nothing changes until <code>#apply</code> is called, and
+ * <code>#apply</code> either takes everything planned or, if the inventory no longer looks as it did when planned,
+ * nothing at all.
+ * <br><br>
+ * Creative players and a missing player owe nothing.
+ */
+public class InventoryDebitPlan {
+    protected final IntArrayList slots = new IntArrayList();
+    protected final IntArrayList amounts = new IntArrayList();
+    /**
+     * The stack in each planned slot at the time of planning, to tell whether the inventory has changed since.
+     */
+    protected final List<ItemStack> stacks = new ArrayList<>();
+    protected boolean satisfied;
+
+    protected InventoryDebitPlan(boolean satisfied) {
+        this.satisfied = satisfied;
+    }
+
+    public static InventoryDebitPlan of(@Nullable Player player, @Nullable List<ItemStack> requisites) {
+        if (requisites == null || requisites.isEmpty()) return new InventoryDebitPlan(true);
+        if (player == null || player.isCreative()) return new InventoryDebitPlan(true);
+
+        ItemMultiset remaining = ItemMultiset.of(requisites);
+        int owed = 0;
+        for (ItemStack requisite : requisites) {
+            if (!requisite.isEmpty()) owed += requisite.getCount();
+        }
+
+        InventoryDebitPlan plan = new InventoryDebitPlan(false);
+        List<ItemStack> items = player.getInventory().items;
+        for (int i = 0; i < items.size() && owed > 0; i++) {
+            ItemStack stackInSlot = items.get(i);
+            if (stackInSlot.isEmpty()) continue;
+
+            int taken = remaining.shrink(stackInSlot, stackInSlot.getCount());
+            if (taken == 0) continue;
+
+            plan.slots.add(i);
+            plan.amounts.add(taken);
+            plan.stacks.add(stackInSlot);
+            owed -= taken;
+        }
+
+        plan.satisfied = owed <= 0;
+        return plan;
+    }
+
+    /**
+     * Whether the inventory holds everything owed.
+     */
+    public boolean isSatisfied() {
+        return this.satisfied;
+    }
+
+    /**
+     * Takes the planned items from the player and hands back their crafting remainders, putting a remainder in the
+     * slot it came from if that slot was emptied and dropping whatever doesn't fit. Returns false without taking
+     * anything if the plan isn't satisfied or any planned slot has changed since planning. A plan may only be applied
+     * once.
+     */
+    public boolean apply(Player player) {
+        if (!this.satisfied) return false;
+
+        Inventory inventory = player.getInventory();
+        for (int n = 0; n < this.slots.size(); n++) {
+            ItemStack stackInSlot = inventory.items.get(this.slots.getInt(n));
+            if (stackInSlot != this.stacks.get(n) || stackInSlot.getCount() < this.amounts.getInt(n)) return false;
+        }
+
+        for (int n = 0; n < this.slots.size(); n++) {
+            int slot = this.slots.getInt(n);
+            int amount = this.amounts.getInt(n);
+            ItemStack stackInSlot = this.stacks.get(n);
+
+            ItemStack craftingRemaining = stackInSlot.getCraftingRemainingItem();
+            stackInSlot.shrink(amount);
+            if (craftingRemaining.isEmpty()) continue;
+
+            craftingRemaining.setCount(craftingRemaining.getCount() * amount);
+            if (stackInSlot.isEmpty() && craftingRemaining.getCount() <= craftingRemaining.getMaxStackSize()) {
+                inventory.setItem(slot, craftingRemaining);
+            } else {
+                inventory.placeItemBackInInventory(craftingRemaining);
+            }
+        }
+
+        this.satisfied = false;
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.kawaiicakes.nobullship.api;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenCustomHashMap;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Counts of items, where two <code>ItemStack</code>s count as the same item if
+ * <code>ItemStack#isSameItemSameTags</code> says so. Adding and looking up a stack is a single hash lookup, so
+ * summing and comparing collections of items is linear in their size.
+ * <br><br>
+ * Items are kept in the order they were first added, so <code>#toStacks</code> lists them the way the stacks they
+ * were summed from did.
+ */
+public class ItemMultiset {
+    /**
+     * Hashes an <code>ItemStack</code> by its <code>Item</code> and tag, ignoring its count.
+     */
+    public static final Hash.Strategy<ItemStack> SAME_ITEM_SAME_TAGS = new Hash.Strategy<>() {
+        @Override
+        public int hashCode(ItemStack stack) {
+            if (stack == null) return 0;
+            return 31 * System.identityHashCode(stack.getItem()) + Objects.hashCode(stack.getTag());
+        }
+
+        @Override
+        public boolean equals(ItemStack a, ItemStack b) {
+            if (a == b) return true;
+            if (a == null || b == null) return false;
+            return ItemStack.isSameItemSameTags(a, b);
+        }
+    };
+
+    protected final Object2IntLinkedOpenCustomHashMap<ItemStack> counts = new Object2IntLinkedOpenCustomHashMap<>(SAME_ITEM_SAME_TAGS);
+
+    public static ItemMultiset of(Iterable<ItemStack> stacks) {
+        ItemMultiset toReturn = new ItemMultiset();
+        for (ItemStack stack : stacks) {
+            toReturn.add(stack);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Adds the count of the passed stack. The stack itself is never stored, so it may be modified afterwards.
+     */
+    public void add(ItemStack stack) {
+        this.add(stack, stack.getCount());
+    }
+
+    public void add(ItemStack stack, int count) {
+        if (stack.isEmpty() || count <= 0) return;
+
+        if (this.counts.containsKey(stack)) {
+            this.counts.addTo(stack, count);
+        } else {
+            ItemStack key = stack.copy();
+            key.setCount(1);
+            this.counts.put(key, count);
+        }
+    }
+
+    public int count(ItemStack stack) {
+        return this.counts.getInt(stack);
+    }
+
+    /**
+     * Returns true if the item was ever added, even if it has since been shrunk to nothing.
+     */
+    public boolean contains(ItemStack stack) {
+        return this.counts.containsKey(stack);
+    }
+
+    /**
+     * Takes up to <code>count</code> of the item away, returning how many were taken. The item is remembered at a
+     * count of 0 rather than removed.
+     */
+    public int shrink(ItemStack stack, int count) {
+        int present = this.counts.getInt(stack);
+        int taken = Math.min(present, Math.max(count, 0));
+        if (taken > 0) this.counts.put(stack, present - taken);
+        return taken;
+    }
+
+    public boolean isEmpty() {
+        return this.counts.isEmpty();
+    }
+
+    /**
+     * Returns true if this contains at least as many of every item as <code>requirements</code> does.
+     */
+    public boolean containsAll(ItemMultiset requirements) {
+        for (Object2IntMap.Entry<ItemStack> entry : requirements.counts.object2IntEntrySet()) {
+            if (this.counts.getInt(entry.getKey()) < entry.getIntValue()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A new stack for every item with a count above 0, holding that count.
+     */
+    public List<ItemStack> toStacks() {
+        List<ItemStack> toReturn = new ArrayList<>(this.counts.size());
+        for (Object2IntMap.Entry<ItemStack> entry : this.counts.object2IntEntrySet()) {
+            if (entry.getIntValue() <= 0) continue;
+            ItemStack stack = entry.getKey().copy();
+            stack.setCount(entry.getIntValue());
+            toReturn.add(stack);
+        }
+        return toReturn;
+    }
+}
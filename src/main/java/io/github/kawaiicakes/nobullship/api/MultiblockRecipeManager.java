@@ -5,23 +5,34 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
+import com.google.gson.JsonObject;
+import com.mojang.datafixers.util.Pair;
 import com.mojang.logging.LogUtils;
 import io.github.kawaiicakes.nobullship.Config;
 import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
+import io.github.kawaiicakes.nobullship.multiblock.DeconstructionScheduler;
 import io.github.kawaiicakes.nobullship.multiblock.MultiblockPattern;
+import io.github.kawaiicakes.nobullship.multiblock.PatternLevelView;
+import io.github.kawaiicakes.nobullship.multiblock.StructureRemover;
+import io.github.kawaiicakes.nobullship.multiblock.StructureTracker;
+import io.github.kawaiicakes.nobullship.network.ClientboundMismatchReportPacket;
+import io.github.kawaiicakes.nobullship.network.ClientboundRecipeDeltaPacket;
 import io.github.kawaiicakes.nobullship.network.ClientboundUpdateNoBullshipPacket;
+import io.github.kawaiicakes.nobullship.network.NoBullshipPackets;
 import io.github.kawaiicakes.nobullship.schematic.SchematicItem;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.core.NonNullList;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.server.packs.resources.ResourceManager;
-import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
 import net.minecraft.sounds.SoundSource;
 import net.minecraft.util.GsonHelper;
 import net.minecraft.util.profiling.ProfilerFiller;
@@ -33,75 +44,117 @@ import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.context.UseOnContext;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.Blocks;
-import net.minecraft.world.level.block.SimpleWaterloggedBlock;
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.block.state.pattern.BlockInWorld;
 import net.minecraft.world.level.block.state.pattern.BlockPattern;
-import net.minecraft.world.level.block.state.properties.BlockStateProperties;
 import net.minecraftforge.common.crafting.conditions.ICondition;
 import net.minecraftforge.event.ForgeEventFactory;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static io.github.kawaiicakes.nobullship.Registry.*;
-import static io.github.kawaiicakes.nobullship.schematic.SchematicRecipe.compareSummedContents;
-import static io.github.kawaiicakes.nobullship.schematic.SchematicRecipe.getSummedContents;
 import static net.minecraft.ChatFormatting.RED;
+import static net.minecraft.ChatFormatting.YELLOW;
 import static net.minecraft.core.particles.ParticleTypes.LARGE_SMOKE;
+import static net.minecraft.nbt.Tag.TAG_COMPOUND;
 import static net.minecraft.nbt.Tag.TAG_INT;
 
-public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
+public class MultiblockRecipeManager extends SimplePreparableReloadListener<PreparedRecipes> {
     private static final Gson GSON = (new GsonBuilder()).setPrettyPrinting().disableHtmlEscaping().create();
+    protected static final String DIRECTORY = "entity_recipes";
+    protected static final String PATH_SUFFIX = ".json";
     private static final Logger LOGGER = LogUtils.getLogger();
     public static final Component FAIL = Component.translatable("chat.nobullship.fail").withStyle(RED);
     public static final Component FAIL2 = Component.translatable("chat.nobullship.fail2").withStyle(RED);
     public static final Component FAIL3 = Component.translatable("chat.nobullship.fail3").withStyle(RED);
     public static final Component FAIL4 = Component.translatable("chat.nobullship.fail4").withStyle(RED);
     public static final Component FAIL5 = Component.translatable("chat.nobullship.fail5").withStyle(RED);
+    public static final Component FAIL_LOCKED = Component.translatable("chat.nobullship.fail_locked").withStyle(RED);
+    public static final Component VERIFYING = Component.translatable("chat.nobullship.verifying").withStyle(YELLOW);
     protected static MultiblockRecipeManager INSTANCE = null;
 
     protected int globalCooldownTime = 0;
     protected int maxGlobalCooldownTime = 400000;
     protected final ICondition.IContext conditionContext;
+    /**
+     * Players with an asynchronous search in flight. Only touched from the main thread.
+     */
+    protected final Set<UUID> pendingMatches = new HashSet<>();
 
     /**
      * A map available on the serverside containing the recipe id as a key.
      */
     private Map<ResourceLocation, MultiblockRecipe> recipes = ImmutableMap.of();
+    /**
+     * The recipes last loaded from each source, in the order sources were first loaded. Published together as
+     * <code>#recipes</code>.
+     */
+    private final Map<String, Map<ResourceLocation, MultiblockRecipe>> recipesBySource = new LinkedHashMap<>();
+    /**
+     * Recipes added through <code>#addRecipes</code>, which win over those of any source.
+     */
+    private final Map<ResourceLocation, MultiblockRecipe> addedRecipes = new LinkedHashMap<>();
+    private final Map<ResourceLocation, MultiblockRecipe> changedSinceSync = new LinkedHashMap<>();
+    private final Set<ResourceLocation> removedSinceSync = new LinkedHashSet<>();
     private LinkedList<ResourceLocation> blacklistedNameCache;
+    /**
+     * The NBT of each recipe's result with its id filled in, built and checked once whenever recipes are loaded.
+     * Recipes whose result can't be spawned are left out. Copied for each spawn.
+     */
+    private Reference2ObjectOpenHashMap<MultiblockRecipe, CompoundTag> spawnTemplates = new Reference2ObjectOpenHashMap<>();
+    /**
+     * Entities made to be shown on the client, reused from frame to frame. Emptied when recipes are replaced or
+     * the level changes.
+     */
+    private final Map<ResourceLocation, Entity> displayEntities = new HashMap<>();
+    @Nullable
+    private Level displayLevel;
 
     public MultiblockRecipeManager() {
         this(ICondition.IContext.EMPTY);
     }
 
+    /**
+     * A new manager is made for every reload. It starts from the recipes of the one it replaces, so that the recipes a
+     * reload leaves unchanged can be told apart from those it changes.
+     */
     public MultiblockRecipeManager(ICondition.IContext conditionContext) {
-        super(GSON, "entity_recipes");
         this.conditionContext = conditionContext;
 
+        if (INSTANCE != null) {
+            this.recipes = INSTANCE.recipes;
+            this.recipesBySource.putAll(INSTANCE.recipesBySource);
+            this.changedSinceSync.putAll(INSTANCE.changedSinceSync);
+            this.removedSinceSync.addAll(INSTANCE.removedSinceSync);
+            this.spawnTemplates = INSTANCE.spawnTemplates;
+        }
+
         INSTANCE = this;
     }
 
     public void replaceRecipes(ClientboundUpdateNoBullshipPacket packet) {
         this.recipes = packet.recipes;
+        this.prepareSpawnTemplates();
         this.globalCooldownTime = packet.globalCooldownTime;
         this.maxGlobalCooldownTime = packet.maxGlobalCooldownTime;
 
-        List<ResourceLocation> whiteList = packet.whiteList;
-        List<ResourceLocation> blackList = packet.blackList;
-
-        this.blacklistedNameCache = this.recipes
-                .values()
-                .stream()
-                .map(MultiblockRecipe::result)
-                .filter(location -> !whiteList.contains(location))
-                .collect(Collectors.toCollection(LinkedList::new));
+        this.rebuildBlacklist(packet.whiteList, packet.blackList);
+    }
 
-        this.blacklistedNameCache.addAll(blackList);
+    /**
+     * Brings the recipes of a client up to date with a <code>ClientboundRecipeDeltaPacket</code>.
+     */
+    public void applyRecipeDelta(ClientboundRecipeDeltaPacket packet) {
+        Map<ResourceLocation, MultiblockRecipe> updated = new LinkedHashMap<>(this.recipes);
+        packet.removed.forEach(updated::remove);
+        updated.putAll(packet.changed);
+
+        this.recipes = ImmutableMap.copyOf(updated);
+        this.prepareSpawnTemplates();
+        this.rebuildBlacklist(packet.whiteList, packet.blackList);
     }
 
     public Map<ResourceLocation, MultiblockRecipe> getRecipes() {
@@ -137,7 +190,7 @@ public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
 
         this.recipes.forEach((key, value) -> {
             NonNullList<ItemStack> blocks = NonNullList.create();
-            blocks.addAll(value.recipe().getTotalBlocks());
+            value.recipe().getTotalBlocks().forEach(stack -> blocks.add(stack.copy()));
             toReturn.put(key, blocks);
         });
 
@@ -148,45 +201,109 @@ public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
         return Optional.ofNullable(this.recipes.getOrDefault(id, null));
     }
 
+    /**
+     * Returns the entity a recipe makes. On the client the same entity is returned every time for the same level,
+     * as it is only ever shown; it must not be added to the level or kept past a change of level.
+     */
     @Nullable
     public Entity getEntityForRecipe(ResourceLocation id, Level level) {
         MultiblockRecipe recipe = this.recipes.getOrDefault(id, null);
         if (recipe == null) return null;
 
-        CompoundTag nbt = recipe.nbt() == null ? new CompoundTag() : recipe.nbt();
-        //noinspection DataFlowIssue
-        nbt.putString("id", recipe.result().toString());
+        if (!level.isClientSide) {
+            CompoundTag template = this.getSpawnTemplate(recipe);
+            return template == null ? null : EntityType.loadEntityRecursive(template, level, (type) -> type);
+        }
+
+        if (level != this.displayLevel) {
+            this.displayEntities.clear();
+            this.displayLevel = level;
+        }
+
+        Entity entity = this.displayEntities.get(id);
+        if (entity == null) {
+            CompoundTag template = this.getSpawnTemplate(recipe);
+            if (template == null) return null;
+            entity = EntityType.loadEntityRecursive(template, level, (type) -> type);
+            if (entity == null) return null;
+            this.displayEntities.put(id, entity);
+        }
+        return entity;
+    }
+
+    /**
+     * Returns a copy of the NBT the recipe's result is spawned from, id included, or null if it can't be spawned.
+     */
+    @Nullable
+    public CompoundTag getSpawnTemplate(MultiblockRecipe recipe) {
+        CompoundTag template = this.spawnTemplates.get(recipe);
+        if (template == null && !this.spawnTemplates.containsKey(recipe)) template = prepareSpawnTemplate(recipe);
+        return template == null ? null : template.copy();
+    }
+
+    protected void prepareSpawnTemplates() {
+        Reference2ObjectOpenHashMap<MultiblockRecipe, CompoundTag> templates = new Reference2ObjectOpenHashMap<>(this.recipes.size());
+        for (Map.Entry<ResourceLocation, MultiblockRecipe> entry : this.recipes.entrySet()) {
+            MultiblockRecipe recipe = entry.getValue();
+            if (this.spawnTemplates.containsKey(recipe)) {
+                templates.put(recipe, this.spawnTemplates.get(recipe));
+                continue;
+            }
+
+            CompoundTag template = prepareSpawnTemplate(recipe);
+            if (template == null) LOGGER.error("The result of recipe {} can't be spawned!", entry.getKey());
+            templates.put(recipe, template);
+        }
+
+        this.spawnTemplates = templates;
+        this.displayEntities.clear();
+    }
+
+    /**
+     * Builds the NBT a recipe's result is spawned from. Returns null if the result or any of its passengers names
+     * an entity type that doesn't exist.
+     */
+    @Nullable
+    protected static CompoundTag prepareSpawnTemplate(MultiblockRecipe recipe) {
+        CompoundTag template = recipe.nbt() != null ? recipe.nbt().copy() : new CompoundTag();
+        template.putString("id", recipe.result().toString());
+
+        return hasValidEntityTypes(template) ? template : null;
+    }
+
+    protected static boolean hasValidEntityTypes(CompoundTag entityTag) {
+        if (EntityType.by(entityTag).isEmpty()) return false;
 
-        return EntityType.loadEntityRecursive(nbt, level, (type) -> type);
+        ListTag passengers = entityTag.getList("Passengers", TAG_COMPOUND);
+        for (int i = 0; i < passengers.size(); i++) {
+            if (!hasValidEntityTypes(passengers.getCompound(i))) return false;
+        }
+        return true;
     }
 
     /**
-     * Pass a recipe ID and the context using it into here to attempt to spawn the result.
+     * Pass a recipe ID and the context using it into here to attempt to spawn the result. If
+     * <code>Config#ASYNC_MATCHING</code> is enabled, the structure is searched for off the main thread and the
+     * result is spawned on a later tick; in that case a return of true only means the search has begun. Recipes with
+     * a schematic block are answered by the <code>StructureTracker</code> instead if it is enabled.
      */
     public boolean trySpawn(@Nullable MultiblockRecipe recipe, UseOnContext context) throws RuntimeException {
         // TODO: Fake player compat & config whether fake players can use this schematic...
         if (!(context.getLevel() instanceof ServerLevel level)) return false;
         BlockPos pos = context.getClickedPos();
+        Player player = context.getPlayer();
         try {
             if (recipe == null) {
-                level.playSound(null, context.getClickedPos(), CONSTRUCT_FAILED.get(), SoundSource.PLAYERS, 0.78F, 1.0F);
-                Objects.requireNonNull(((ServerPlayer) context.getPlayer()))
-                        .sendSystemMessage(FAIL3, true);
+                fail(level, pos, player, FAIL3);
                 return false;
             }
 
             if (Config.DISABLE_GLOBAL_COOLDOWN.get() && this.globalCooldownTime > this.maxGlobalCooldownTime) {
-                level.playSound(null, context.getClickedPos(), CONSTRUCT_FAILED.get(), SoundSource.PLAYERS, 0.78F, 1.0F);
-                Objects.requireNonNull(((ServerPlayer) context.getPlayer()))
-                        .sendSystemMessage(FAIL4, true);
+                fail(level, pos, player, FAIL4);
                 return false;
             }
 
             MultiblockPattern pattern = recipe.recipe();
-            ResourceLocation resultLocation = recipe.result();
-            CompoundTag nbt = recipe.nbt();
-
-            Player player = context.getPlayer();
 
             ImmutableList<ItemStack> requisites = null;
 
@@ -195,142 +312,286 @@ public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
             } catch (IllegalArgumentException ignored) {
             }
 
-            if (requisites != null && !requisites.isEmpty()) {
-                if (player != null && !player.isCreative()) {
-                    List<ItemStack> summedContents = getSummedContents(player.getInventory().items);
-                    if (!compareSummedContents(requisites, summedContents)) {
-                        level.playSound(null, pos, CONSTRUCT_FAILED.get(), SoundSource.PLAYERS, 0.78F, 1.0F);
-                        Objects.requireNonNull(((ServerPlayer) player))
-                                .sendSystemMessage(FAIL2, true);
-                        return false;
-                    }
-                }
+            if (!hasRequisites(player, requisites)) {
+                fail(level, pos, player, FAIL2);
+                return false;
             }
 
-            BlockPattern.BlockPatternMatch match;
+            boolean tracked = recipe.hasSchematicBlock() && Config.TRACK_STRUCTURES.get();
+            if (!tracked && Config.ASYNC_MATCHING.get()) return this.trySpawnAsync(level, recipe, pattern, context, requisites);
+
+            MultiblockPattern.MatchResult result;
             if (!recipe.hasSchematicBlock()) {
-                match = pattern.find(level, pos);
+                result = pattern.findWithReport(level, pos);
+            } else if (tracked) {
+                result = StructureTracker.get(level).findExact(level, recipe, pos);
             } else {
-                match = pattern.findExact(level, pos, recipe.schematicBlockOffset());
+                result = pattern.findExactWithReport(level, pos, recipe.schematicBlockOffset());
             }
 
-            if (match == null) {
-                level.playSound(null, pos, CONSTRUCT_FAILED.get(), SoundSource.PLAYERS, 0.78F, 1.0F);
-                Objects.requireNonNull(((ServerPlayer) context.getPlayer()))
-                        .sendSystemMessage(FAIL, true);
+            if (result.match() == null) {
+                failWithReport(level, pos, player, result.mismatch());
                 return false;
             }
 
-            for (int i = 0; i < pattern.getDepth(); ++i) {
-                for (int j = 0; j < pattern.getWidth(); ++j) {
-                    for (int k = 0; k < pattern.getHeight(); ++k) {
-                        if (pattern.getPattern()[i][k][j].equals(BlockInWorldPredicate.WILDCARD)) continue;
-                        BlockInWorld blockinworld = match.getBlock(j, k, i);
+            return this.consumeAndSpawn(level, recipe, pattern, result.match(), context, requisites);
+        } catch (RuntimeException e) {
+            LOGGER.error("Exception while trying to check recipe!", e);
+            fail(level, pos, player, FAIL5);
+            return false;
+        }
+    }
 
-                        BlockState replacementState = Blocks.AIR.defaultBlockState();
-                        if (blockinworld.getState().getBlock() instanceof SimpleWaterloggedBlock
-                                && blockinworld.getState().getValue(BlockStateProperties.WATERLOGGED).equals(true))
-                            replacementState = Blocks.WATER.defaultBlockState();
+    /**
+     * Searches a snapshot of the blocks around the clicked position on a background thread, ignoring NBT. Whatever
+     * is found is handed back to the main thread, where it is checked again against the level as it is then, NBT
+     * included, before anything is consumed or spawned. Should that check fail, the level is searched again on the
+     * main thread, as another placement may pass where the first did not. A player may only have one search in
+     * flight at a time.
+     */
+    protected boolean trySpawnAsync(ServerLevel level, MultiblockRecipe recipe, MultiblockPattern pattern, UseOnContext context, @Nullable ImmutableList<ItemStack> requisites) {
+        BlockPos pos = context.getClickedPos();
+        Player player = context.getPlayer();
+        ItemStack schematic = context.getItemInHand();
 
-                        level.setBlock(blockinworld.getPos(), replacementState, 2);
-                        level.levelEvent(2001, blockinworld.getPos(), Block.getId(blockinworld.getState()));
+        UUID requester = player == null ? null : player.getUUID();
+        if (requester != null && !this.pendingMatches.add(requester)) {
+            if (player instanceof ServerPlayer serverPlayer) serverPlayer.sendSystemMessage(VERIFYING, true);
+            return false;
+        }
+
+        PatternLevelView snapshot = pattern.createSnapshot(level, pos);
+        boolean exact = recipe.hasSchematicBlock();
+        int[] schematicBlockOffset = recipe.schematicBlockOffset();
+
+        if (player instanceof ServerPlayer serverPlayer) serverPlayer.sendSystemMessage(VERIFYING, true);
+
+        CompletableFuture
+                .supplyAsync(() -> {
+                    MultiblockPattern.PartialMatch partial = new MultiblockPattern.PartialMatch();
+                    MultiblockPattern.Placement placement = exact
+                            ? pattern.locateExact(snapshot, pos, schematicBlockOffset, false, partial)
+                            : pattern.locate(snapshot, pos, false, partial);
+                    return Pair.of(placement, placement == null ? pattern.report(snapshot, partial) : null);
+                }, Util.backgroundExecutor())
+                .whenCompleteAsync((searched, throwable) -> {
+                    if (requester != null) this.pendingMatches.remove(requester);
+                    try {
+                        if (throwable != null) throw new RuntimeException(throwable);
+
+                        if (player != null && (player.isRemoved() || schematic.isEmpty() || player.getItemInHand(context.getHand()) != schematic)) {
+                            fail(level, pos, player, FAIL);
+                            return;
+                        }
+
+                        if (!hasRequisites(player, requisites)) {
+                            fail(level, pos, player, FAIL2);
+                            return;
+                        }
+
+                        MultiblockPattern.Placement placement = searched.getFirst();
+                        if (placement == null) {
+                            failWithReport(level, pos, player, searched.getSecond());
+                            return;
+                        }
+
+                        BlockPattern.BlockPatternMatch match = pattern.verify(level, placement);
+                        if (match == null) {
+                            // the placement found failed on NBT, but another may not; search the level as trySpawn would
+                            MultiblockPattern.MatchResult result = exact
+                                    ? pattern.findExactWithReport(level, pos, schematicBlockOffset)
+                                    : pattern.findLiveWithReport(level, pos);
+                            if (result.match() == null) {
+                                failWithReport(level, pos, player, result.mismatch());
+                                return;
+                            }
+                            match = result.match();
+                        }
+
+                        this.consumeAndSpawn(level, recipe, pattern, match, context, requisites);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Exception while trying to check recipe!", e);
+                        fail(level, pos, player, FAIL5);
                     }
-                }
-            }
+                }, level.getServer());
 
-            level.playSound(null, pos, CONSTRUCT_SUCCESS.get(), SoundSource.PLAYERS, 0.77F, 1.0F);
-            level.sendParticles(LARGE_SMOKE, pos.getX(), pos.getY(), pos.getZ(), 7, 0.2, 0.2, 0.2, 0.3);
-
-            removeItemsFromPlayer(player, level, context, pos, requisites);
-
-            if (nbt == null) nbt = new CompoundTag();
-            nbt.putString("id", resultLocation.toString());
-
-            boolean matchWidthIsEven = (match.getWidth() ^ 1) > match.getWidth();
-            boolean matchDepthIsEven = (match.getDepth() ^ 1) > match.getDepth();
-
-            BlockPos posForSpawn = match.getBlock(match.getWidth() / 2, match.getHeight() - 1, match.getDepth() / 2).getPos();
-
-            double xPos;
-            double zPos;
-
-            Direction forwardsDirection = match.getForwards();
-
-            switch (forwardsDirection) {
-                case NORTH -> {
-                    xPos = matchWidthIsEven ? posForSpawn.getX() : posForSpawn.getX() + 0.5;
-                    zPos = matchDepthIsEven ? posForSpawn.getZ() + 1.0 : posForSpawn.getZ() + 0.5;
-                }
-                case SOUTH -> {
-                    xPos = matchWidthIsEven ? posForSpawn.getX() + 1.0 : posForSpawn.getX() + 0.5;
-                    zPos = matchDepthIsEven ? posForSpawn.getZ() : posForSpawn.getZ() + 0.5;
-                }
-                case EAST -> {
-                    xPos = matchDepthIsEven ? posForSpawn.getX() : posForSpawn.getX() + 0.5;
-                    zPos = matchWidthIsEven ? posForSpawn.getZ() : posForSpawn.getZ() + 0.5;
-                }
-                case WEST -> {
-                    xPos = matchDepthIsEven ? posForSpawn.getX() + 1.0 : posForSpawn.getX() + 0.5;
-                    zPos = matchWidthIsEven ? posForSpawn.getZ() + 1.0 : posForSpawn.getZ() + 0.5;
-                }
-                default -> {
-                    xPos = posForSpawn.getX();
-                    zPos = posForSpawn.getZ();
-                }
-            }
+        return true;
+    }
 
-            double finalXPos = xPos;
-            double finalZPos = zPos;
-            Entity entity = EntityType.loadEntityRecursive(nbt, level, (entityType) -> {
-                entityType.moveTo(finalXPos, (double) posForSpawn.getY() + 0.05D, finalZPos, entityType.getYRot(), entityType.getXRot());
-                return entityType;
-            });
+    /**
+     * Removes the blocks of a confirmed match, takes the requisites and spawns the result of the recipe. Structures
+     * of at least <code>Config#STAGED_REMOVAL_VOLUME</code> blocks are handed to the
+     * <code>DeconstructionScheduler</code> instead, and their result spawned once they are cleared.
+     * <br><br>
+     * The requisites are planned out of the player's inventory and the result is created before anything is
+     * touched, and the requisites are taken before the structure is, so a player who can't pay or a result which
+     * can't be loaded leaves both the structure and the inventory as they were. Returns false in those cases, and
+     * also if any block of the match belongs to a structure the <code>DeconstructionScheduler</code> is still
+     * clearing, as that structure has already been paid for.
+     */
+    protected boolean consumeAndSpawn(ServerLevel level, MultiblockRecipe recipe, MultiblockPattern pattern, BlockPattern.BlockPatternMatch match, UseOnContext context, @Nullable ImmutableList<ItemStack> requisites) {
+        BlockPos pos = context.getClickedPos();
+        Player player = context.getPlayer();
 
-            if (entity == null) {
-                LOGGER.error("Unable to spawn entity {}!", resultLocation);
-                throw new RuntimeException("Unable to spawn entity " + resultLocation + "!");
-            } else {
-                float yRot = match.getForwards().toYRot();
-                entity.setYRot(yRot);
-
-                if (entity instanceof Mob mob) {
-                    if (!ForgeEventFactory.doSpecialSpawn(mob, level, (float) entity.getX(), (float) entity.getY(), (float) entity.getZ(), null, MobSpawnType.MOB_SUMMONED)) {
-                        mob.setYBodyRot(yRot);
-                        mob.setYHeadRot(yRot);
-                        mob.finalizeSpawn(level, level.getCurrentDifficultyAt(entity.blockPosition()), MobSpawnType.COMMAND, null, null);
-                    }
-                }
+        InventoryDebitPlan debit = InventoryDebitPlan.of(player, requisites);
+        if (!debit.isSatisfied()) {
+            fail(level, pos, player, FAIL2);
+            return false;
+        }
 
-                if (!level.tryAddFreshEntityWithPassengers(entity)) {
-                    throw new IllegalArgumentException("Entity " + entity.getName() + " has a duplicate UUID!");
-                }
-            }
+        CompoundTag nbt = this.getSpawnTemplate(recipe);
+        if (nbt == null) {
+            LOGGER.error("Unable to spawn entity {}!", recipe.result());
+            fail(level, pos, player, FAIL5);
+            return false;
+        }
 
-            // This doesn't seem to do anything on the server... is this intended for the client?
-            for (int i1 = 0; i1 < pattern.getDepth(); ++i1) {
-                for (int j1 = 0; j1 < pattern.getWidth(); ++j1) {
-                    for (int k1 = 0; k1 < pattern.getHeight(); ++k1) {
-                        if (pattern.getPattern()[i1][k1][j1].equals(BlockInWorldPredicate.WILDCARD)) continue;
-                        BlockInWorld blockInWorld = match.getBlock(j1, k1, i1);
+        boolean matchWidthIsEven = (match.getWidth() ^ 1) > match.getWidth();
+        boolean matchDepthIsEven = (match.getDepth() ^ 1) > match.getDepth();
 
-                        Block replacementBlock = Blocks.AIR;
-                        if (blockInWorld.getState().getBlock() instanceof SimpleWaterloggedBlock
-                                && blockInWorld.getState().getValue(BlockStateProperties.WATERLOGGED).equals(true))
-                            replacementBlock = Blocks.WATER;
+        BlockPos posForSpawn = match.getBlock(match.getWidth() / 2, match.getHeight() - 1, match.getDepth() / 2).getPos();
 
-                        level.blockUpdated(blockInWorld.getPos(), replacementBlock);
-                    }
-                }
+        double xPos;
+        double zPos;
+
+        Direction forwardsDirection = match.getForwards();
+
+        switch (forwardsDirection) {
+            case NORTH -> {
+                xPos = matchWidthIsEven ? posForSpawn.getX() : posForSpawn.getX() + 0.5;
+                zPos = matchDepthIsEven ? posForSpawn.getZ() + 1.0 : posForSpawn.getZ() + 0.5;
+            }
+            case SOUTH -> {
+                xPos = matchWidthIsEven ? posForSpawn.getX() + 1.0 : posForSpawn.getX() + 0.5;
+                zPos = matchDepthIsEven ? posForSpawn.getZ() : posForSpawn.getZ() + 0.5;
+            }
+            case EAST -> {
+                xPos = matchDepthIsEven ? posForSpawn.getX() : posForSpawn.getX() + 0.5;
+                zPos = matchWidthIsEven ? posForSpawn.getZ() : posForSpawn.getZ() + 0.5;
+            }
+            case WEST -> {
+                xPos = matchDepthIsEven ? posForSpawn.getX() + 1.0 : posForSpawn.getX() + 0.5;
+                zPos = matchWidthIsEven ? posForSpawn.getZ() + 1.0 : posForSpawn.getZ() + 0.5;
+            }
+            default -> {
+                xPos = posForSpawn.getX();
+                zPos = posForSpawn.getZ();
             }
+        }
 
-            return true;
-        } catch (RuntimeException e) {
-            LOGGER.error("Exception while trying to check recipe!", e);
-            level.playSound(null, pos, CONSTRUCT_FAILED.get(), SoundSource.PLAYERS, 0.78F, 1.0F);
-            Objects.requireNonNull(((ServerPlayer) context.getPlayer()))
-                    .sendSystemMessage(FAIL5, true);
+        double yPos = (double) posForSpawn.getY() + 0.05D;
+        float yRot = match.getForwards().toYRot();
+
+        List<BlockPos> positions = StructureRemover.positionsOf(pattern, match);
+        if (DeconstructionScheduler.isAnyLocked(level, positions)) {
+            fail(level, pos, player, FAIL_LOCKED);
             return false;
         }
+
+        int stagedVolume = Config.STAGED_REMOVAL_VOLUME.get();
+        boolean staged = stagedVolume > 0 && positions.size() >= stagedVolume;
+
+        // a staged result is only spawned once clearing finishes, but it must be known to load before anything is taken
+        Entity entity = staged
+                ? EntityType.loadEntityRecursive(nbt, level, (entityType) -> entityType)
+                : createResult(level, nbt, xPos, yPos, zPos, yRot);
+        if (entity == null) {
+            if (staged) LOGGER.error("Unable to spawn entity {}!", recipe.result());
+            fail(level, pos, player, FAIL5);
+            return false;
+        }
+
+        if (player != null && !debit.apply(player)) {
+            fail(level, pos, player, FAIL2);
+            return false;
+        }
+
+        if (!staged) StructureRemover.clear(level, positions);
+        StructureRemover.sendEffects(level, pattern, match);
+
+        level.playSound(null, pos, CONSTRUCT_SUCCESS.get(), SoundSource.PLAYERS, 0.77F, 1.0F);
+        level.sendParticles(LARGE_SMOKE, pos.getX(), pos.getY(), pos.getZ(), 7, 0.2, 0.2, 0.2, 0.3);
+
+        useSchematic(player, level, context, pos);
+
+        if (staged) {
+            DeconstructionScheduler.get(level).schedule(positions, nbt, xPos, yPos, zPos, yRot);
+            return true;
+        }
+
+        addResult(level, entity);
+        return true;
+    }
+
+    /**
+     * Spawns the entity described by <code>nbt</code>, which must contain its id, facing <code>yRot</code>.
+     */
+    public static void spawnResult(ServerLevel level, CompoundTag nbt, double xPos, double yPos, double zPos, float yRot) {
+        Entity entity = createResult(level, nbt, xPos, yPos, zPos, yRot);
+        if (entity == null) throw new RuntimeException("Unable to spawn entity " + nbt.getString("id") + "!");
+        addResult(level, entity);
+    }
+
+    /**
+     * Loads the entity described by <code>nbt</code> and readies it to be added to the level, or returns null if it
+     * can't be loaded.
+     */
+    @Nullable
+    protected static Entity createResult(ServerLevel level, CompoundTag nbt, double xPos, double yPos, double zPos, float yRot) {
+        Entity entity = EntityType.loadEntityRecursive(nbt, level, (entityType) -> {
+            entityType.moveTo(xPos, yPos, zPos, entityType.getYRot(), entityType.getXRot());
+            return entityType;
+        });
+
+        if (entity == null) {
+            LOGGER.error("Unable to spawn entity {}!", nbt.getString("id"));
+            return null;
+        }
+
+        entity.setYRot(yRot);
+
+        if (entity instanceof Mob mob) {
+            if (!ForgeEventFactory.doSpecialSpawn(mob, level, (float) entity.getX(), (float) entity.getY(), (float) entity.getZ(), null, MobSpawnType.MOB_SUMMONED)) {
+                mob.setYBodyRot(yRot);
+                mob.setYHeadRot(yRot);
+                mob.finalizeSpawn(level, level.getCurrentDifficultyAt(entity.blockPosition()), MobSpawnType.COMMAND, null, null);
+            }
+        }
+        return entity;
+    }
+
+    protected static void addResult(ServerLevel level, Entity entity) {
+        if (!level.tryAddFreshEntityWithPassengers(entity)) {
+            throw new IllegalArgumentException("Entity " + entity.getName() + " has a duplicate UUID!");
+        }
+    }
+
+    protected static boolean hasRequisites(@Nullable Player player, @Nullable ImmutableList<ItemStack> requisites) {
+        if (requisites == null || requisites.isEmpty()) return true;
+        if (player == null || player.isCreative()) return true;
+
+        return ItemMultiset.of(player.getInventory().items).containsAll(ItemMultiset.of(requisites));
+    }
+
+    protected static void fail(ServerLevel level, BlockPos pos, @Nullable Player player, Component message) {
+        level.playSound(null, pos, CONSTRUCT_FAILED.get(), SoundSource.PLAYERS, 0.78F, 1.0F);
+        if (player instanceof ServerPlayer serverPlayer) serverPlayer.sendSystemMessage(message, true);
+    }
+
+    /**
+     * As <code>#fail</code> with <code>#FAIL</code>, but tells the player how much of the structure is in place and
+     * sends them the wrong positions to highlight, if there is a report.
+     */
+    protected static void failWithReport(ServerLevel level, BlockPos pos, @Nullable Player player, @Nullable MultiblockPattern.MismatchReport report) {
+        if (report == null) {
+            fail(level, pos, player, FAIL);
+            return;
+        }
+
+        fail(level, pos, player, Component.translatable("chat.nobullship.fail_mismatch", report.satisfiedCells(), report.totalCells()).withStyle(RED));
+        if (player instanceof ServerPlayer serverPlayer) {
+            NoBullshipPackets.sendToPlayer(new ClientboundMismatchReportPacket(report), serverPlayer);
+        }
     }
 
     public void incrementGlobalCooldown(int ticks) {
@@ -350,7 +611,11 @@ public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
         return INSTANCE;
     }
 
-    protected static void removeItemsFromPlayer(@Nullable Player player, Level level, UseOnContext context, BlockPos pos, @Nullable ImmutableList<ItemStack> requisites) {
+    /**
+     * Counts a use against the schematic in hand, if it has limited uses. Requisites are taken separately, through
+     * an <code>InventoryDebitPlan</code>, before the structure is touched.
+     */
+    protected static void useSchematic(@Nullable Player player, Level level, UseOnContext context, BlockPos pos) {
         if (player == null || player.isCreative()) return;
 
         ItemStack itemInHand = context.getItemInHand();
@@ -362,38 +627,6 @@ public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
                 itemInHand = null;
             }
         }
-        if (requisites != null) {
-            for (int i = 0; i < player.getInventory().items.size(); i++) {
-                ItemStack stackInSlot = player.getInventory().items.get(i);
-                ItemStack craftingRemaining = stackInSlot.getCraftingRemainingItem();
-
-                final ItemStack finalItemstack = stackInSlot;
-                ItemStack requiredItemRemaining = requisites.stream()
-                        .filter(standard -> ItemStack.isSameItemSameTags(standard, finalItemstack))
-                        .findFirst()
-                        .orElse(null);
-
-                if (requiredItemRemaining == null) continue;
-
-                int decrement = Math.min(stackInSlot.getCount(), requiredItemRemaining.getCount());
-
-                if (!stackInSlot.isEmpty()) {
-                    stackInSlot.shrink(decrement);
-                    requiredItemRemaining.shrink(decrement);
-                }
-
-                if (craftingRemaining.isEmpty()) continue;
-
-                if (stackInSlot.isEmpty()) {
-                    player.getInventory().setItem(i, craftingRemaining);
-                } else if (ItemStack.isSame(stackInSlot, craftingRemaining) && ItemStack.tagMatches(stackInSlot, craftingRemaining)) {
-                    craftingRemaining.grow(stackInSlot.getCount());
-                    player.getInventory().setItem(i, craftingRemaining);
-                } else if (!player.getInventory().add(craftingRemaining)) {
-                    player.drop(craftingRemaining, false);
-                }
-            }
-        }
         if (itemInHand != null && Objects.requireNonNull(itemInHand.getTag()).contains("nobullshipUses", TAG_INT)) {
             ItemStack toNewStack = itemInHand;
             if (itemInHand.getCount() > 1) {
@@ -410,41 +643,59 @@ public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
         }
     }
 
+    /**
+     * Adds recipes on top of those loaded from data until the next reload, replacing any with the same id.
+     */
     public void addRecipes(Map<ResourceLocation, MultiblockRecipe> multiblockRecipeMap) {
-        // hmm, today I will make a new method to add recipes to the MultiblockRecipeManager
-        // surely I will not encounter any concurrent modification issues or race conditions
-        // :clueless:
-        ImmutableMap.Builder<ResourceLocation, MultiblockRecipe> builder = ImmutableMap.builder();
-
-        if (this.recipes == null || this.recipes.isEmpty()) {
-            this.recipes = ImmutableMap.copyOf(multiblockRecipeMap);
-        } else {
-            builder.putAll(this.recipes);
-            builder.putAll(multiblockRecipeMap);
-
-            this.recipes = builder.build();
+        this.addedRecipes.putAll(multiblockRecipeMap);
+        this.publishRecipes();
+    }
+
+    /**
+     * Replaces every recipe loaded from the given source, such as a data directory, with those passed. Recipes of
+     * other sources are left alone.
+     */
+    public void setRecipes(String source, Map<ResourceLocation, MultiblockRecipe> sourceRecipes) {
+        this.recipesBySource.put(source, ImmutableMap.copyOf(sourceRecipes));
+        this.publishRecipes();
+    }
+
+    /**
+     * Makes the recipes of every source available as one map, noting which have changed since clients were last
+     * sent them. A recipe counts as changed only if it isn't the very same object as before, so recipes reused by a
+     * <code>RecipeCache</code> are neither resent nor have their spawn templates rebuilt.
+     */
+    protected void publishRecipes() {
+        Map<ResourceLocation, MultiblockRecipe> merged = new LinkedHashMap<>();
+        this.recipesBySource.values().forEach(merged::putAll);
+        merged.putAll(this.addedRecipes);
+
+        for (Map.Entry<ResourceLocation, MultiblockRecipe> entry : merged.entrySet()) {
+            if (this.recipes.get(entry.getKey()) == entry.getValue()) continue;
+            this.changedSinceSync.put(entry.getKey(), entry.getValue());
+            this.removedSinceSync.remove(entry.getKey());
+        }
+        for (ResourceLocation recipeId : this.recipes.keySet()) {
+            if (merged.containsKey(recipeId)) continue;
+            this.changedSinceSync.remove(recipeId);
+            this.removedSinceSync.add(recipeId);
         }
 
+        this.recipes = ImmutableMap.copyOf(merged);
+
         List<ResourceLocation> whiteList = Config.DROP_WHITELIST.get().stream().map(ResourceLocation::new).toList();
         List<ResourceLocation> blackList = Config.DROP_BLACKLIST.get().stream().map(ResourceLocation::new).toList();
+        this.rebuildBlacklist(whiteList, blackList);
+        this.prepareSpawnTemplates();
+    }
 
-        if (this.blacklistedNameCache == null) {
-            this.blacklistedNameCache = this.recipes
-                    .values()
-                    .stream()
-                    .map(MultiblockRecipe::result)
-                    .filter((scrutinized) -> !whiteList.contains(scrutinized))
-                    .collect(Collectors.toCollection(LinkedList::new));
-        } else {
-            this.blacklistedNameCache.addAll(
-                    multiblockRecipeMap
-                    .values()
-                    .stream()
-                    .map(MultiblockRecipe::result)
-                    .filter((scrutinized) -> !whiteList.contains(scrutinized))
-                    .collect(Collectors.toCollection(LinkedList::new))
-            );
-        }
+    protected void rebuildBlacklist(List<ResourceLocation> whiteList, List<ResourceLocation> blackList) {
+        this.blacklistedNameCache = this.recipes
+                .values()
+                .stream()
+                .map(MultiblockRecipe::result)
+                .filter((scrutinized) -> !whiteList.contains(scrutinized))
+                .collect(Collectors.toCollection(LinkedList::new));
 
         for (ResourceLocation blacklisted : blackList) {
             if (this.blacklistedNameCache.contains(blacklisted)) continue;
@@ -452,26 +703,60 @@ public class MultiblockRecipeManager extends SimpleJsonResourceReloadListener {
         }
     }
 
-    @Override
-    protected void apply(Map<ResourceLocation, JsonElement> pObject, ResourceManager pResourceManager, ProfilerFiller pProfiler) {
-        ImmutableMap.Builder<ResourceLocation, MultiblockRecipe> builder = ImmutableMap.builder();
+    /**
+     * The recipes added or changed since <code>#markSynced</code> was last called.
+     */
+    public Map<ResourceLocation, MultiblockRecipe> getChangedSinceSync() {
+        return ImmutableMap.copyOf(this.changedSinceSync);
+    }
 
-        for(Map.Entry<ResourceLocation, JsonElement> entry : pObject.entrySet()) {
-            ResourceLocation recipeId = entry.getKey();
-            if (recipeId.getPath().startsWith("_")) continue;
+    /**
+     * The ids of recipes removed since <code>#markSynced</code> was last called.
+     */
+    public List<ResourceLocation> getRemovedSinceSync() {
+        return List.copyOf(this.removedSinceSync);
+    }
 
-            try {
-                MultiblockRecipe deserializedRecipe
-                        = MultiblockRecipe.fromJson(GsonHelper.convertToJsonObject(entry.getValue(), "top element"), this.conditionContext);
-                if (deserializedRecipe == null) continue;
+    /**
+     * Call once every client has been sent the current recipes.
+     */
+    public void markSynced() {
+        this.changedSinceSync.clear();
+        this.removedSinceSync.clear();
+    }
 
-                builder.put(recipeId, deserializedRecipe);
-            } catch (IllegalArgumentException | JsonParseException jsonParseException) {
-                LOGGER.error("Parsing error loading recipe {}", recipeId, jsonParseException);
-            }
+    /**
+     * Reads and compiles every recipe file in parallel, off the main thread. Files unchanged since they were last
+     * compiled are taken from the <code>RecipeCache</code> instead.
+     */
+    @Override
+    protected PreparedRecipes prepare(ResourceManager pResourceManager, ProfilerFiller pProfiler) {
+        RecipeCache cache = RecipeCache.named(DIRECTORY);
+        cache.begin();
+        PreparedRecipes prepared = PreparedRecipes.read(PreparedRecipes.listRecipeFiles(pResourceManager, DIRECTORY, PATH_SUFFIX), cache.reading(MultiblockRecipeManager::readRecipe));
+        cache.finish();
+        return prepared;
+    }
+
+    @Nullable
+    protected static MultiblockRecipe readRecipe(ResourceLocation recipeId, byte[] contents, PreparedRecipes prepared) {
+        JsonObject json = GsonHelper.convertToJsonObject(GsonHelper.fromJson(GSON, new String(contents, StandardCharsets.UTF_8), JsonElement.class), "top element");
+
+        if (json.has("conditions") && json.get("conditions").isJsonArray()) {
+            prepared.putConditions(recipeId, json.getAsJsonArray("conditions"));
+            JsonObject withoutConditions = new JsonObject();
+            json.entrySet().forEach(entry -> {
+                if (!entry.getKey().equals("conditions")) withoutConditions.add(entry.getKey(), entry.getValue());
+            });
+            json = withoutConditions;
         }
 
-        this.addRecipes(builder.build());
+        return MultiblockRecipe.fromJson(json, ICondition.IContext.EMPTY);
+    }
+
+    @Override
+    protected void apply(PreparedRecipes pObject, ResourceManager pResourceManager, ProfilerFiller pProfiler) {
+        this.setRecipes(DIRECTORY, pObject.getRecipes(this.conditionContext, LOGGER));
 
         LOGGER.info("Loaded {} recipes", recipes.size());
     }
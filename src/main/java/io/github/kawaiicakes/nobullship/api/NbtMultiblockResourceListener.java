@@ -1,27 +1,23 @@
 package io.github.kawaiicakes.nobullship.api;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.gson.JsonParseException;
 import com.mojang.logging.LogUtils;
 import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtIo;
 import net.minecraft.resources.ResourceLocation;
-import net.minecraft.server.packs.resources.Resource;
 import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
 import net.minecraft.util.profiling.ProfilerFiller;
+import net.minecraftforge.common.crafting.conditions.ICondition;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
 
-public class NbtMultiblockResourceListener extends SimplePreparableReloadListener<Map<ResourceLocation, CompoundTag>> {
+public class NbtMultiblockResourceListener extends SimplePreparableReloadListener<PreparedRecipes> {
     protected static final Logger LOGGER = LogUtils.getLogger();
     protected static final String PATH_SUFFIX = ".nbt";
-    protected static final int PATH_SUFFIX_LENGTH = ".nbt".length();
     private final MultiblockRecipeManager multiblockRecipeManager;
     private final String directory;
 
@@ -30,76 +26,28 @@ public class NbtMultiblockResourceListener extends SimplePreparableReloadListene
         this.directory = "nbt_entity_recipes";
     }
 
+    /**
+     * Decompresses and converts every structure file in parallel, off the main thread. Each file's tag is only
+     * held for as long as it takes to convert it, so no more are in memory at once than there are threads reading.
+     * Files unchanged since they were last converted are taken from the <code>RecipeCache</code> instead.
+     */
     @Override
-    protected Map<ResourceLocation, CompoundTag> prepare(ResourceManager pResourceManager, ProfilerFiller pProfiler) {
-        Map<ResourceLocation, CompoundTag> toReturn = new HashMap<>();
-
-        int i = this.directory.length() + 1;
-
-        for(Map.Entry<ResourceLocation, Resource> entry : pResourceManager.listResources(this.directory, (fileResourceLocation) ->
-                fileResourceLocation.getPath().endsWith(PATH_SUFFIX)).entrySet()) {
-            ResourceLocation resourceId = entry.getKey();
-            String s = resourceId.getPath();
-            ResourceLocation fullResourceId = new ResourceLocation(resourceId.getNamespace(), s.substring(i, s.length() - PATH_SUFFIX_LENGTH));
-
-            try {
-                InputStream inputStream = entry.getValue().open();
-
-                try {
-                    CompoundTag fromFile = NbtIo.readCompressed(inputStream);
-                    //noinspection ConstantValue
-                    if (fromFile != null) {
-                        CompoundTag duplicateTag = toReturn.put(fullResourceId, fromFile);
-                        if (duplicateTag != null) {
-                            throw new IllegalStateException("Duplicate data file ignored with ID " + fullResourceId);
-                        }
-                    } else {
-                        LOGGER.error("Couldn't load data file {} from {} as it's null or empty", fullResourceId, resourceId);
-                    }
-                } catch (Throwable e) {
-                    //noinspection ConstantValue
-                    if (inputStream != null) {
-                        try {
-                            inputStream.close();
-                        } catch (Throwable f) {
-                            f.addSuppressed(f);
-                        }
-                    }
-
-                    throw e;
-                }
-
-                //noinspection ConstantValue
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-            } catch (IllegalArgumentException | IOException parseException) {
-                LOGGER.error("Couldn't parse data file {} from {}", fullResourceId, resourceId, parseException );
-            }
-        }
+    protected PreparedRecipes prepare(ResourceManager pResourceManager, ProfilerFiller pProfiler) {
+        RecipeCache cache = RecipeCache.named(this.directory);
+        cache.begin();
+        PreparedRecipes prepared = PreparedRecipes.read(PreparedRecipes.listRecipeFiles(pResourceManager, this.directory, PATH_SUFFIX), cache.reading(NbtMultiblockResourceListener::readRecipe));
+        cache.finish();
+        return prepared;
+    }
 
-        return toReturn;
+    @Nullable
+    protected static MultiblockRecipe readRecipe(ResourceLocation recipeId, byte[] contents, PreparedRecipes prepared) throws IOException {
+        CompoundTag fromFile = NbtIo.readCompressed(new ByteArrayInputStream(contents));
+        return MultiblockRecipe.fromRawNbt(fromFile, recipeId);
     }
 
     @Override
-    protected void apply(Map<ResourceLocation, CompoundTag> pObject, ResourceManager pResourceManager, ProfilerFiller pProfiler) {
-        ImmutableMap.Builder<ResourceLocation, MultiblockRecipe> builder = ImmutableMap.builder();
-
-        for (Map.Entry<ResourceLocation, CompoundTag> entry : pObject.entrySet()) {
-            ResourceLocation recipeId = entry.getKey();
-            if (recipeId.getPath().startsWith("_")) continue;
-
-            try {
-                MultiblockRecipe deserializedRecipe
-                        = MultiblockRecipe.fromRawNbt(entry.getValue(), recipeId);
-                if (deserializedRecipe == null) continue;
-
-                builder.put(recipeId, deserializedRecipe);
-            } catch (IllegalArgumentException | JsonParseException jsonParseException) {
-                LOGGER.error("Parsing error loading recipe {}", recipeId, jsonParseException);
-            }
-        }
-
-        this.multiblockRecipeManager.addRecipes(builder.build());
+    protected void apply(PreparedRecipes pObject, ResourceManager pResourceManager, ProfilerFiller pProfiler) {
+        this.multiblockRecipeManager.setRecipes(this.directory, pObject.getRecipes(ICondition.IContext.EMPTY, LOGGER));
     }
 }
@@ -0,0 +1,111 @@
+package io.github.kawaiicakes.nobullship.api;
+
+import com.google.gson.JsonArray;
+import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
+import net.minecraft.Util;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraftforge.common.crafting.CraftingHelper;
+import net.minecraftforge.common.crafting.conditions.ICondition;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The recipes read during the prepare phase of a reload, along with the files which couldn't be read. Files are read
+ * in parallel on the background executor; the only thing left for the apply phase is to check conditions and
+ * publish the result.
+ * <br><br>
+ * Conditions are kept aside rather than tested while reading, as tags haven't been loaded yet during the prepare
+ * phase.
+ */
+public class PreparedRecipes {
+    protected final Map<ResourceLocation, MultiblockRecipe> recipes = new ConcurrentHashMap<>();
+    protected final Map<ResourceLocation, JsonArray> conditions = new ConcurrentHashMap<>();
+    protected final Map<ResourceLocation, Throwable> errors = new ConcurrentHashMap<>();
+
+    /**
+     * Lists the files in <code>directory</code> ending with <code>suffix</code> by recipe id, leaving out those
+     * whose name begins with an underscore.
+     */
+    public static Map<ResourceLocation, Resource> listRecipeFiles(ResourceManager resourceManager, String directory, String suffix) {
+        Map<ResourceLocation, Resource> toReturn = new HashMap<>();
+        int prefixLength = directory.length() + 1;
+
+        for (Map.Entry<ResourceLocation, Resource> entry : resourceManager.listResources(directory, (location) -> location.getPath().endsWith(suffix)).entrySet()) {
+            String path = entry.getKey().getPath();
+            ResourceLocation recipeId = new ResourceLocation(entry.getKey().getNamespace(), path.substring(prefixLength, path.length() - suffix.length()));
+            if (recipeId.getPath().startsWith("_")) continue;
+
+            toReturn.put(recipeId, entry.getValue());
+        }
+        return toReturn;
+    }
+
+    /**
+     * Reads every input in parallel, blocking until all are done. An input for which the reader throws or returns
+     * null is recorded as an error.
+     */
+    public static <T> PreparedRecipes read(Map<ResourceLocation, T> inputs, RecipeReader<T> reader) {
+        PreparedRecipes toReturn = new PreparedRecipes();
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[inputs.size()];
+        int i = 0;
+        for (Map.Entry<ResourceLocation, T> entry : inputs.entrySet()) {
+            ResourceLocation recipeId = entry.getKey();
+            T input = entry.getValue();
+            futures[i++] = CompletableFuture.runAsync(() -> {
+                try {
+                    MultiblockRecipe recipe = reader.read(recipeId, input, toReturn);
+                    if (recipe == null) throw new IllegalArgumentException("Recipe " + recipeId + " is malformed!");
+                    toReturn.recipes.put(recipeId, recipe);
+                } catch (Exception e) {
+                    toReturn.errors.put(recipeId, e);
+                }
+            }, Util.backgroundExecutor());
+        }
+
+        CompletableFuture.allOf(futures).join();
+        return toReturn;
+    }
+
+    /**
+     * Sets aside the conditions under which a recipe is loaded, to be tested in <code>#getRecipes</code>.
+     */
+    public void putConditions(ResourceLocation recipeId, JsonArray conditions) {
+        this.conditions.put(recipeId, conditions);
+    }
+
+    /**
+     * Logs the files which couldn't be read and returns the recipes whose conditions are met.
+     */
+    public Map<ResourceLocation, MultiblockRecipe> getRecipes(ICondition.IContext conditionContext, Logger logger) {
+        this.errors.forEach((recipeId, error) -> logger.error("Parsing error loading recipe {}", recipeId, error));
+
+        Map<ResourceLocation, MultiblockRecipe> toReturn = new HashMap<>(this.recipes.size());
+        this.recipes.forEach((recipeId, recipe) -> {
+            JsonArray recipeConditions = this.conditions.get(recipeId);
+            if (recipeConditions != null && !CraftingHelper.processConditions(recipeConditions, conditionContext)) return;
+            toReturn.put(recipeId, recipe);
+        });
+        return toReturn;
+    }
+
+    public int getErrorCount() {
+        return this.errors.size();
+    }
+
+    @FunctionalInterface
+    public interface RecipeReader<T> {
+        /**
+         * Reads a single recipe. May be called from several threads at once.
+         */
+        @Nullable
+        MultiblockRecipe read(ResourceLocation recipeId, T input, PreparedRecipes prepared) throws Exception;
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.kawaiicakes.nobullship.api;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.mojang.logging.LogUtils;
+import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.kawaiicakes.nobullship.NoBullship.MOD_ID;
+import static net.minecraft.nbt.Tag.TAG_STRING;
+
+/**
+ * Compiled recipes from the last reload, kept on disk in the config folder so that unchanged recipe files needn't
+ * be parsed again on the next start. Every file is hashed as it is read; if the hash matches the one cached for its
+ * recipe id, the recipe is rebuilt from its cached NBT instead of from the file. The whole cache is thrown away if
+ * the version of the mod has changed since it was written.
+ * <br><br>
+ * There is one cache of each name for the life of the game, as reload listeners are made anew on every reload.
+ * Recipes built on one reload are remembered until the next, so that a <code>/reload</code> hands back the very same
+ * <code>MultiblockRecipe</code> for every file that hasn't changed without even rebuilding it from NBT. The disk is
+ * only read on the first reload.
+ * <br><br>
+ * Reading is safe from several threads at once. Files which fail to parse are never cached.
+ */
+public class RecipeCache {
+    protected static final Logger LOGGER = LogUtils.getLogger();
+    protected static final Map<String, RecipeCache> CACHES = new ConcurrentHashMap<>();
+
+    protected final Path path;
+    protected final String version;
+    /**
+     * The entries written at the end of the last reload, or read from disk if there hasn't been one yet.
+     */
+    @Nullable
+    protected Map<ResourceLocation, CompoundTag> previous;
+    /**
+     * The recipes built from <code>#previous</code>, where they've been built.
+     */
+    protected Map<ResourceLocation, MultiblockRecipe> compiled = Map.of();
+    protected Map<ResourceLocation, CompoundTag> current = new ConcurrentHashMap<>();
+    protected Map<ResourceLocation, MultiblockRecipe> currentCompiled = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cache of the given name, creating it if need be. Nothing is read until the first <code>#begin</code>.
+     */
+    public static RecipeCache named(String name) {
+        return CACHES.computeIfAbsent(name, RecipeCache::new);
+    }
+
+    protected RecipeCache(String name) {
+        this.path = FMLPaths.CONFIGDIR.get().resolve(MOD_ID).resolve(name + ".cache");
+        this.version = ModList.get().getModContainerById(MOD_ID)
+                .map(container -> container.getModInfo().getVersion().toString())
+                .orElse("");
+    }
+
+    /**
+     * Readies the cache for a reload, reading it from disk if this is the first.
+     */
+    public void begin() {
+        if (this.previous == null) this.previous = this.readFromDisk();
+        this.current = new ConcurrentHashMap<>();
+        this.currentCompiled = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Ends a reload; what was read during it is remembered for the next and written out if anything changed.
+     */
+    public void finish() {
+        this.save();
+        this.previous = this.current;
+        this.compiled = this.currentCompiled;
+    }
+
+    protected Map<ResourceLocation, CompoundTag> readFromDisk() {
+        Map<ResourceLocation, CompoundTag> toReturn = new ConcurrentHashMap<>();
+        if (!Files.isRegularFile(this.path)) return toReturn;
+
+        try {
+            CompoundTag cache = NbtIo.readCompressed(this.path.toFile());
+            if (!cache.getString("version").equals(this.version)) return toReturn;
+
+            CompoundTag recipes = cache.getCompound("recipes");
+            for (String key : recipes.getAllKeys()) {
+                ResourceLocation recipeId = ResourceLocation.tryParse(key);
+                if (recipeId != null) toReturn.put(recipeId, recipes.getCompound(key));
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Couldn't read recipe cache {}; recipes will be parsed from scratch", this.path, e);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Wraps a reader of file contents so that files are only passed to it when they've changed.
+     */
+    public PreparedRecipes.RecipeReader<Resource> reading(ContentsReader reader) {
+        return (recipeId, resource, prepared) -> {
+            byte[] contents;
+            try (InputStream inputStream = resource.open()) {
+                contents = inputStream.readAllBytes();
+            }
+            String hash = Hashing.murmur3_128().hashBytes(contents).toString();
+
+            CompoundTag cached = this.previous == null ? null : this.previous.get(recipeId);
+            if (cached != null && cached.getString("hash").equals(hash)) {
+                MultiblockRecipe recipe = this.compiled.get(recipeId);
+                if (recipe != null) {
+                    restoreConditions(recipeId, cached, prepared);
+                } else {
+                    recipe = fromCached(recipeId, cached, prepared);
+                }
+
+                if (recipe != null) {
+                    this.current.put(recipeId, cached);
+                    this.currentCompiled.put(recipeId, recipe);
+                    return recipe;
+                }
+            }
+
+            MultiblockRecipe recipe = reader.read(recipeId, contents, prepared);
+            if (recipe == null) return null;
+            this.currentCompiled.put(recipeId, recipe);
+
+            CompoundTag recipeTag = recipe.toNbt();
+            if (recipeTag != null) {
+                CompoundTag entry = new CompoundTag();
+                entry.putString("hash", hash);
+                entry.put("recipe", recipeTag);
+                JsonArray conditions = prepared.conditions.get(recipeId);
+                if (conditions != null) entry.putString("conditions", conditions.toString());
+                this.current.put(recipeId, entry);
+            }
+            return recipe;
+        };
+    }
+
+    @Nullable
+    protected static MultiblockRecipe fromCached(ResourceLocation recipeId, CompoundTag cached, PreparedRecipes prepared) {
+        try {
+            MultiblockRecipe recipe = MultiblockRecipe.fromNbt(cached.getCompound("recipe"));
+            if (recipe != null) restoreConditions(recipeId, cached, prepared);
+            return recipe;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cached recipe {} is unreadable; parsing it again", recipeId, e);
+            return null;
+        }
+    }
+
+    protected static void restoreConditions(ResourceLocation recipeId, CompoundTag cached, PreparedRecipes prepared) {
+        if (!cached.contains("conditions", TAG_STRING)) return;
+        prepared.putConditions(recipeId, JsonParser.parseString(cached.getString("conditions")).getAsJsonArray());
+    }
+
+    /**
+     * Writes out what was read during this reload, if it differs from what was there before.
+     */
+    protected void save() {
+        if (this.current.equals(this.previous)) return;
+
+        CompoundTag recipes = new CompoundTag();
+        this.current.forEach((recipeId, entry) -> recipes.put(recipeId.toString(), entry));
+
+        CompoundTag cache = new CompoundTag();
+        cache.putString("version", this.version);
+        cache.put("recipes", recipes);
+
+        try {
+            Files.createDirectories(this.path.getParent());
+            NbtIo.writeCompressed(cache, this.path.toFile());
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't write recipe cache {}", this.path, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ContentsReader {
+        /**
+         * Parses the raw contents of a recipe file. May be called from several threads at once.
+         */
+        @Nullable
+        MultiblockRecipe read(ResourceLocation recipeId, byte[] contents, PreparedRecipes prepared) throws Exception;
+    }
+}
@@ -7,7 +7,6 @@ import com.google.gson.JsonObject;
 import com.mojang.datafixers.util.Pair;
 import com.mojang.logging.LogUtils;
 import com.mojang.serialization.JsonOps;
-import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicate;
 import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicateBuilder;
 import io.github.kawaiicakes.nobullship.multiblock.MultiblockPattern;
 import net.minecraft.FieldsAreNonnullByDefault;
@@ -34,6 +33,11 @@ import static io.github.kawaiicakes.nobullship.Registry.WILDCARD_BLOCK;
 /**
  * Bears no relation to <code>FinishedMultiblockRecipe</code>. Simply an immutable data carrier intended to cache
  * multiblock recipes.
+ * <br><br>
+ * The accessors hand back the recipe's own pattern, NBT and requisites without copying them, as they are read
+ * several times over whenever a schematic is used. None of them may be modified. Stacks handed on to code which may
+ * change them, such as screens and JEI, must be copied first; anything needing to change the recipe as a whole
+ * should work on <code>#mutableCopy</code> instead.
  */
 @ParametersAreNonnullByDefault
 @FieldsAreNonnullByDefault
@@ -47,39 +51,31 @@ public record MultiblockRecipe(
         int[] schematicBlockOffset
 ) {
     private static final Logger LOGGER = LogUtils.getLogger();
-    @Override
-    public MultiblockPattern recipe() {
-        return new MultiblockPattern(
-                (BlockInWorldPredicate[][][]) this.recipe.getPattern(),
-                this.recipe.getPalette(),
-                this.recipe.getTotalBlocks(),
-                this.recipe.getSerializedPattern()
-        );
-    }
-
-    @Override
-    public ResourceLocation result() {
-        return new ResourceLocation(this.result.toString());
-    }
-
-    @Nullable
-    @Override
-    public CompoundTag nbt() {
-        return this.nbt != null ? this.nbt.copy() : null;
-    }
 
     /**
-     * This shit is made like this to ensure I return a deep copy; it kept returning mutable values
+     * Returns a copy of this recipe whose NBT, schematic block offset and pattern, per
+     * <code>MultiblockPattern#mutableCopy</code>, may be modified without affecting this one. The requisites are
+     * copied stack by stack, so the stacks may be modified too, but the list holding them is still immutable.
      */
-    @Nullable
-    @Override
-    public ImmutableList<ItemStack> requisites() {
-        if (this.requisites == null) return null;
-        ImmutableList.Builder<ItemStack> toReturn = ImmutableList.builder();
-        for (ItemStack stack : this.requisites) {
-            toReturn.add(stack.copy());
+    public MultiblockRecipe mutableCopy() {
+        ImmutableList<ItemStack> requisites = null;
+        if (this.requisites != null) {
+            ImmutableList.Builder<ItemStack> builder = ImmutableList.builder();
+            for (ItemStack stack : this.requisites) {
+                builder.add(stack.copy());
+            }
+            requisites = builder.build();
         }
-        return toReturn.build();
+
+        return new MultiblockRecipe(
+                this.resultingEntityName,
+                this.recipe.mutableCopy(),
+                this.result,
+                this.nbt != null ? this.nbt.copy() : null,
+                requisites,
+                this.hasSchematicBlock,
+                this.schematicBlockOffset.clone()
+        );
     }
 
     /**
@@ -1,5 +1,6 @@
 package io.github.kawaiicakes.nobullship.api.schematic;
 
+import io.github.kawaiicakes.nobullship.api.ItemMultiset;
 import io.github.kawaiicakes.nobullship.multiblock.block.MultiblockWorkshopBlockEntity;
 import io.github.kawaiicakes.nobullship.schematic.SchematicRecipe;
 import net.minecraft.core.NonNullList;
@@ -21,7 +22,6 @@ import java.util.Optional;
 
 import static io.github.kawaiicakes.nobullship.multiblock.block.MultiblockWorkshopBlockEntity.EMPTY_SCHEM_SLOT;
 import static io.github.kawaiicakes.nobullship.multiblock.block.MultiblockWorkshopBlockEntity.SHAPELESS_SLOTS;
-import static io.github.kawaiicakes.nobullship.schematic.SchematicRecipe.getSummedContents;
 import static net.minecraft.sounds.SoundEvents.UI_CARTOGRAPHY_TABLE_TAKE_RESULT;
 import static net.minecraft.sounds.SoundSource.PLAYERS;
 
@@ -132,30 +132,22 @@ public class SchematicResultSlot extends Slot {
                 = getRemainingItemsForRecipe(recipe, this.blockEntity, (IItemHandlerModifiable) this.itemHandler);
         ForgeHooks.setCraftingPlayer(null);
 
-        List<ItemStack> requiredItemMap
-                = getSummedContents(recipe.getShapelessIngredients());
+        ItemMultiset requiredItemMap = ItemMultiset.of(recipe.getShapelessIngredients());
 
         for (int i : ArrayUtils.add(MultiblockWorkshopBlockEntity.SHAPELESS_SLOTS.toIntArray(), EMPTY_SCHEM_SLOT)) {
             ItemStack stackInSlot = this.itemHandler.getStackInSlot(i);
             ItemStack craftingRemaining = remainingItems.get(i - 9);
 
-            final ItemStack finalItemstack = stackInSlot;
-            ItemStack requiredItemRemaining = requiredItemMap.stream()
-                    .filter(standard -> ItemStack.isSameItemSameTags(standard, finalItemstack))
-                    .findFirst()
-                    .orElse(null);
-
-            if (SHAPELESS_SLOTS.contains(i) && requiredItemRemaining == null) continue;
+            boolean required = requiredItemMap.contains(stackInSlot);
+            if (SHAPELESS_SLOTS.contains(i) && !required) continue;
 
             int decrement = 1;
-            if (requiredItemRemaining != null) decrement
-                    = Math.min(stackInSlot.getCount(), requiredItemRemaining.getCount());
+            if (required) decrement = Math.min(stackInSlot.getCount(), requiredItemMap.count(stackInSlot));
 
             if (!stackInSlot.isEmpty()) {
+                if (required) requiredItemMap.shrink(stackInSlot, decrement);
                 this.itemHandler.extractItem(i, decrement, false);
                 stackInSlot = this.itemHandler.getStackInSlot(i);
-
-                if (requiredItemRemaining != null) requiredItemRemaining.shrink(decrement);
             }
 
             if (craftingRemaining.isEmpty()) continue;
@@ -5,6 +5,7 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.math.Quaternion;
 import com.mojang.math.Vector3f;
+import io.github.kawaiicakes.nobullship.api.ItemMultiset;
 import io.github.kawaiicakes.nobullship.api.MultiblockRecipeManager;
 import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
 import io.github.kawaiicakes.nobullship.schematic.SchematicRecipe;
@@ -38,7 +39,6 @@ import static io.github.kawaiicakes.nobullship.Registry.SCHEMATIC;
 import static io.github.kawaiicakes.nobullship.Registry.WORKSHOP_ITEM;
 import static io.github.kawaiicakes.nobullship.multiblock.screen.MultiblockWorkshopScreen.TEXTURE;
 import static io.github.kawaiicakes.nobullship.schematic.SchematicRecipe.Type.ID;
-import static io.github.kawaiicakes.nobullship.schematic.SchematicRecipe.getSummedContents;
 import static mezz.jei.api.constants.VanillaTypes.ITEM_STACK;
 import static mezz.jei.api.recipe.RecipeIngredientRole.*;
 
@@ -94,7 +94,7 @@ public class SchematicRecipeCategory implements IRecipeCategory<SchematicRecipe>
             }
         }
 
-        List<ItemStack> shapelessIngredients = getSummedContents(recipe.getShapelessIngredients());
+        List<ItemStack> shapelessIngredients = ItemMultiset.of(recipe.getShapelessIngredients()).toStacks();
 
         for (int i = 0; i < 9; ++i) {
             if (i >= shapelessIngredients.size()) break;
@@ -112,8 +112,9 @@ public class SchematicRecipeCategory implements IRecipeCategory<SchematicRecipe>
 
         ImmutableList.Builder<ItemStack> requisiteBuilder = ImmutableList.builder();
         if (this.currentRecipe.getRequisites() != null) requisiteBuilder.addAll(this.currentRecipe.getRequisites());
+        // the recipe's own stacks are copied, as JEI may change the stacks it is handed
         if (resultRecipe.requisites() != null) //noinspection DataFlowIssue
-            requisiteBuilder.addAll(resultRecipe.requisites());
+            resultRecipe.requisites().forEach(stack -> requisiteBuilder.add(stack.copy()));
 
         this.requisites = requisiteBuilder.build();
 
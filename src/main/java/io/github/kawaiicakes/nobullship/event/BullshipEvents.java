@@ -1,12 +1,30 @@
 package io.github.kawaiicakes.nobullship.event;
 
 import io.github.kawaiicakes.nobullship.Config;
+import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicate;
 import io.github.kawaiicakes.nobullship.api.MultiblockRecipeManager;
+import io.github.kawaiicakes.nobullship.multiblock.DeconstructionScheduler;
+import io.github.kawaiicakes.nobullship.multiblock.StructureTracker;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.level.block.piston.PistonStructureResolver;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.EntityJoinLevelEvent;
+import net.minecraftforge.event.level.BlockEvent;
+import net.minecraftforge.event.level.ExplosionEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.event.level.PistonEvent;
+import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class BullshipEvents {
     // As some entities have hard coded drops, this is a guaranteed way to prevent certain items from being dropped.
     @SubscribeEvent
@@ -17,4 +35,82 @@ public class BullshipEvents {
         if (!MultiblockRecipeManager.getInstance().isBlacklistedResult(resultLocation)) return;
         event.setCanceled(true);
     }
+
+    // Subscribing to the supertype catches placement, breaking and neighbour notifications alike.
+    @SubscribeEvent
+    public static void onBlockChanged(BlockEvent event) {
+        StructureTracker.onBlockChanged(event.getLevel(), event.getPos());
+    }
+
+    @SubscribeEvent
+    public static void onBlockBroken(BlockEvent.BreakEvent event) {
+        if (!(event.getLevel() instanceof ServerLevel level)) return;
+        if (DeconstructionScheduler.isLocked(level, event.getPos())) event.setCanceled(true);
+    }
+
+    // Also catches EntityMultiPlaceEvent, which extends it.
+    @SubscribeEvent
+    public static void onBlockPlaced(BlockEvent.EntityPlaceEvent event) {
+        if (!(event.getLevel() instanceof ServerLevel level)) return;
+        if (DeconstructionScheduler.isLocked(level, event.getPos())) event.setCanceled(true);
+    }
+
+    @SubscribeEvent
+    public static void onPistonMoved(PistonEvent.Pre event) {
+        if (!(event.getLevel() instanceof ServerLevel level) || !DeconstructionScheduler.hasJobs(level)) return;
+        PistonStructureResolver resolver = event.getStructureHelper();
+        if (resolver == null || !resolver.resolve()) return;
+
+        Direction moving = event.getPistonMoveType().isExtend ? event.getDirection() : event.getDirection().getOpposite();
+        List<BlockPos> affected = new ArrayList<>();
+        affected.add(event.getFaceOffsetPos());
+        affected.addAll(resolver.getToDestroy());
+        for (BlockPos pushed : resolver.getToPush()) {
+            affected.add(pushed);
+            affected.add(pushed.relative(moving));
+        }
+
+        if (DeconstructionScheduler.isAnyLocked(level, affected)) event.setCanceled(true);
+    }
+
+    @SubscribeEvent
+    public static void onExplosion(ExplosionEvent.Detonate event) {
+        if (!(event.getLevel() instanceof ServerLevel level) || !DeconstructionScheduler.hasJobs(level)) return;
+        event.getAffectedBlocks().removeIf(pos -> DeconstructionScheduler.isLocked(level, pos));
+    }
+
+    @SubscribeEvent
+    public static void onFluidPlaced(BlockEvent.FluidPlaceBlockEvent event) {
+        if (!(event.getLevel() instanceof ServerLevel level)) return;
+        if (DeconstructionScheduler.isLocked(level, event.getPos())) event.setNewState(event.getOriginalState());
+    }
+
+    @SubscribeEvent
+    public static void onLevelTick(TickEvent.LevelTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+        if (!(event.level instanceof ServerLevel level)) return;
+        DeconstructionScheduler.get(level).tick(level);
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        StructureTracker.forget(event.getLevel());
+    }
+
+    // Recipes whose files didn't change survive a reload along with their predicates, which must forget old tag contents
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        BlockInWorldPredicate.invalidateTagStates();
+    }
+
+    // Players joining are sent every recipe, so nothing loaded before the server started needs sending again
+    @SubscribeEvent
+    public static void onServerStarted(ServerStartedEvent event) {
+        MultiblockRecipeManager.getInstance().markSynced();
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        StructureTracker.clear();
+    }
 }
@@ -0,0 +1,222 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import com.mojang.logging.LogUtils;
+import io.github.kawaiicakes.nobullship.Config;
+import io.github.kawaiicakes.nobullship.api.MultiblockRecipeManager;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.LongArrayTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import net.minecraft.world.level.saveddata.SavedData;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static io.github.kawaiicakes.nobullship.NoBullship.MOD_ID;
+import static net.minecraft.nbt.Tag.TAG_COMPOUND;
+
+/**
+ * Clears structures too large to remove in a single tick a batch at a time, spending no more than
+ * <code>Config#REMOVAL_BUDGET</code> microseconds a tick on it across all jobs of a level. The result of the recipe
+ * is spawned once the last batch of a job is cleared.
+ * <br><br>
+ * While a job is running, blocks may not be placed or broken anywhere within the bounds of its structure, nor
+ * moved there by pistons, blown up or turned to stone by fluids, and no other schematic may use its blocks. Changes
+ * made without firing any event, as some mods do, can't be stopped; whatever is in a position when its batch comes up
+ * is cleared like any other block of the structure. A job whose next batch lies in an unloaded chunk waits for the
+ * chunk to load again. Jobs are saved with the level, so a structure half cleared when the server stops is finished
+ * once it starts again.
+ */
+public class DeconstructionScheduler extends SavedData {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    public static final String DATA_NAME = MOD_ID + "_deconstruction";
+    /**
+     * How many positions are cleared between checks of the time budget.
+     */
+    protected static final int BATCH_SIZE = 64;
+
+    protected final List<Job> jobs = new ArrayList<>();
+
+    public static DeconstructionScheduler get(ServerLevel level) {
+        return level.getDataStorage().computeIfAbsent(DeconstructionScheduler::load, DeconstructionScheduler::new, DATA_NAME);
+    }
+
+    /**
+     * Whether any structure of the level is still being cleared. A cheap check for callers which would otherwise do
+     * real work to find out what to ask <code>#isLocked</code> about.
+     */
+    public static boolean hasJobs(ServerLevel level) {
+        return !get(level).jobs.isEmpty();
+    }
+
+    /**
+     * Whether the position lies within a structure still being cleared.
+     */
+    public static boolean isLocked(ServerLevel level, BlockPos pos) {
+        for (Job job : get(level).jobs) {
+            if (job.bounds.isInside(pos)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether any of the positions lies within a structure still being cleared.
+     */
+    public static boolean isAnyLocked(ServerLevel level, Iterable<BlockPos> positions) {
+        List<Job> jobs = get(level).jobs;
+        if (jobs.isEmpty()) return false;
+
+        for (BlockPos pos : positions) {
+            for (Job job : jobs) {
+                if (job.bounds.isInside(pos)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queues the positions for removal and the entity described by <code>result</code> to be spawned afterwards.
+     * <code>result</code> is copied and must contain the id of the entity.
+     */
+    public void schedule(List<BlockPos> positions, CompoundTag result, double x, double y, double z, float yRot) {
+        if (positions.isEmpty()) return;
+
+        long[] packed = new long[positions.size()];
+        for (int n = 0; n < packed.length; n++) {
+            packed[n] = positions.get(n).asLong();
+        }
+
+        this.jobs.add(new Job(packed, 0, result.copy(), x, y, z, yRot));
+        this.setDirty();
+    }
+
+    public void tick(ServerLevel level) {
+        if (this.jobs.isEmpty()) return;
+
+        long deadline = System.nanoTime() + Config.REMOVAL_BUDGET.get() * 1000L;
+        Iterator<Job> iterator = this.jobs.iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+
+            boolean progressed = false;
+            while (!job.isDone() && job.step(level)) {
+                progressed = true;
+                if (System.nanoTime() >= deadline) break;
+            }
+            if (progressed) this.setDirty();
+
+            if (job.isDone()) {
+                iterator.remove();
+                this.setDirty();
+                try {
+                    MultiblockRecipeManager.spawnResult(level, job.result, job.x, job.y, job.z, job.yRot);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Exception while spawning the result of a deconstructed structure!", e);
+                }
+            }
+
+            if (System.nanoTime() >= deadline) return;
+        }
+    }
+
+    public static DeconstructionScheduler load(CompoundTag pTag) {
+        DeconstructionScheduler scheduler = new DeconstructionScheduler();
+        ListTag jobs = pTag.getList("jobs", TAG_COMPOUND);
+        for (int n = 0; n < jobs.size(); n++) {
+            CompoundTag job = jobs.getCompound(n);
+            long[] positions = job.getLongArray("positions");
+            if (positions.length == 0) continue;
+
+            scheduler.jobs.add(new Job(
+                    positions,
+                    job.getInt("next"),
+                    job.getCompound("result"),
+                    job.getDouble("x"),
+                    job.getDouble("y"),
+                    job.getDouble("z"),
+                    job.getFloat("yRot")
+            ));
+        }
+        return scheduler;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag pCompoundTag) {
+        ListTag jobs = new ListTag();
+        for (Job job : this.jobs) {
+            CompoundTag tag = new CompoundTag();
+            tag.put("positions", new LongArrayTag(job.positions));
+            tag.putInt("next", job.next);
+            tag.put("result", job.result);
+            tag.putDouble("x", job.x);
+            tag.putDouble("y", job.y);
+            tag.putDouble("z", job.z);
+            tag.putFloat("yRot", job.yRot);
+            jobs.add(tag);
+        }
+        pCompoundTag.put("jobs", jobs);
+        return pCompoundTag;
+    }
+
+    protected static class Job {
+        protected final long[] positions;
+        protected final LongOpenHashSet structure;
+        protected final BoundingBox bounds;
+        protected final CompoundTag result;
+        protected final double x;
+        protected final double y;
+        protected final double z;
+        protected final float yRot;
+        protected int next;
+
+        protected Job(long[] positions, int next, CompoundTag result, double x, double y, double z, float yRot) {
+            this.positions = positions;
+            this.structure = new LongOpenHashSet(positions);
+            this.result = result;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yRot = yRot;
+            this.next = Math.max(0, Math.min(next, positions.length));
+
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (long packed : positions) {
+                minX = Math.min(minX, BlockPos.getX(packed));
+                minY = Math.min(minY, BlockPos.getY(packed));
+                minZ = Math.min(minZ, BlockPos.getZ(packed));
+                maxX = Math.max(maxX, BlockPos.getX(packed));
+                maxY = Math.max(maxY, BlockPos.getY(packed));
+                maxZ = Math.max(maxZ, BlockPos.getZ(packed));
+            }
+            this.bounds = new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        protected boolean isDone() {
+            return this.next >= this.positions.length;
+        }
+
+        /**
+         * Clears the next batch of positions. Returns false without clearing anything if any of them are in an
+         * unloaded chunk.
+         */
+        protected boolean step(ServerLevel level) {
+            int end = Math.min(this.next + BATCH_SIZE, this.positions.length);
+            List<BlockPos> batch = new ArrayList<>(end - this.next);
+            for (int n = this.next; n < end; n++) {
+                BlockPos pos = BlockPos.of(this.positions[n]);
+                if (!level.isLoaded(pos)) return false;
+                batch.add(pos);
+            }
+
+            StructureRemover.clear(level, batch, this.structure);
+            this.next = end;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.particles.ItemParticleOption;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.client.event.RenderLevelStageEvent;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+import static io.github.kawaiicakes.nobullship.Registry.ITEM_MARKER_PARTICLE;
+
+/**
+ * Outlines the wrong positions of the last structure the player failed to construct, with a marker showing what
+ * belongs in each, for a few seconds after the server reports them.
+ */
+@OnlyIn(Dist.CLIENT)
+public class MismatchHighlighter {
+    protected static final int DURATION_TICKS = 200;
+    protected static List<BlockPos> mismatches = List.of();
+    protected static List<ItemStack> expected = List.of();
+    @Nullable
+    protected static ClientLevel shownIn;
+    protected static long shownUntil;
+
+    public static void show(List<BlockPos> mismatches, List<ItemStack> expected) {
+        ClientLevel level = Minecraft.getInstance().level;
+        if (level == null) return;
+
+        MismatchHighlighter.mismatches = List.copyOf(mismatches);
+        MismatchHighlighter.expected = List.copyOf(expected);
+        shownIn = level;
+        shownUntil = level.getGameTime() + DURATION_TICKS;
+    }
+
+    public static void render(RenderLevelStageEvent event) {
+        ClientLevel level = Minecraft.getInstance().level;
+        if (level == null || level != shownIn || mismatches.isEmpty()) return;
+        if (level.getGameTime() > shownUntil) {
+            mismatches = List.of();
+            expected = List.of();
+            shownIn = null;
+            return;
+        }
+
+        PoseStack poseStack = event.getPoseStack();
+        Vec3 cameraPos = event.getCamera().getPosition();
+        VertexConsumer consumer = event.getLevelRenderer().renderBuffers.bufferSource().getBuffer(RenderType.lines());
+
+        for (int i = 0; i < mismatches.size(); i++) {
+            BlockPos pos = mismatches.get(i);
+
+            poseStack.pushPose();
+            poseStack.translate(pos.getX() - cameraPos.x(), pos.getY() - cameraPos.y(), pos.getZ() - cameraPos.z());
+            LevelRenderer.renderLineBox(poseStack, consumer, -0.002, -0.002, -0.002, 1.002, 1.002, 1.002, 1.0F, 0.2F, 0.2F, 1.0F);
+            poseStack.popPose();
+
+            ItemStack stack = i < expected.size() ? expected.get(i) : ItemStack.EMPTY;
+            if (stack.isEmpty()) continue;
+            level.addParticle(new ItemParticleOption(ITEM_MARKER_PARTICLE.get(), stack), pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5, 0, 0, 0);
+        }
+    }
+}
@@ -3,8 +3,13 @@ package io.github.kawaiicakes.nobullship.multiblock;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.mojang.logging.LogUtils;
+import io.github.kawaiicakes.nobullship.Config;
 import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicate;
 import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicateBuilder;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.core.NonNullList;
@@ -22,7 +27,10 @@ import org.slf4j.Logger;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,10 +40,81 @@ import static net.minecraft.world.level.block.state.properties.BlockStatePropert
 public class MultiblockPattern extends BlockPattern {
     protected static final Logger LOGGER = LogUtils.getLogger();
     public static final Direction[] CARDINAL = {Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST};
+    /**
+     * How many rejected candidates a pattern sees between recalculations of <code>#evaluationOrder</code>.
+     */
+    protected static final int REORDER_INTERVAL = 256;
+    /**
+     * Roughly how many candidate cell tests counting the blockstates of one chunk section costs. Counting is a
+     * straight pass over 4096 packed entries, much cheaper per block than a test.
+     */
+    protected static final int SECTION_COUNT_COST = 1024;
+    /**
+     * How many wrong positions a <code>MismatchReport</code> lists at most.
+     */
+    public static final int MAX_REPORTED_MISMATCHES = 16;
+    /**
+     * Returned by <code>#cellsPassed</code> for a candidate which matched.
+     */
+    protected static final int FULL_MATCH = Integer.MAX_VALUE;
     protected final ImmutableList<BlockInWorldPredicateBuilder> palette;
     protected final ImmutableList<ItemStack> totalBlocks;
     @Nullable
     protected CompoundTag serializedPattern;
+    /**
+     * Every distinct predicate in the pattern save for air and wildcards. Each entry shares its index with
+     * the cells it occupies in <code>#anchorCells</code>.
+     */
+    protected final BlockInWorldPredicate[] anchors;
+    /**
+     * The cells occupied by the predicate at the same index in <code>#anchors</code>. Cells are packed as
+     * <code>width + this.width * (height + this.height * depth)</code>.
+     */
+    protected final int[][] anchorCells;
+    /**
+     * Every predicate in the pattern, flattened using the same packing as <code>#anchorCells</code>. Neither this
+     * nor the predicates within are mutated while matching, so a pattern may be matched from several threads.
+     */
+    protected final BlockInWorldPredicate[] cells;
+    /**
+     * The world offset of each cell from the origin of a match, indexed first by <code>Direction#get2DDataValue</code>
+     * of the facing, then by <code>3 * cell + axis</code>. These are simply <code>#translateAndRotate</code> done
+     * ahead of time.
+     */
+    protected final int[][] offsets;
+    /**
+     * The facings <code>#locate</code> tries. A pattern which looks the same turned by 180 degrees only needs two of
+     * them, and one which looks the same turned by 90 degrees only needs one; see <code>#distinctOrientations</code>.
+     */
+    protected final Direction[] orientations;
+    /**
+     * Every cell save for wildcards, ordered by how likely the cell is to reject a wrong origin. Palette entries
+     * occurring rarely in the pattern (the schematic block, wheels, containers...) come first and air comes last.
+     * This is the order <code>#evaluationOrder</code> starts with and falls back on to break ties.
+     */
+    protected final int[] selectivityOrder;
+    /**
+     * The cells whose predicates must check NBT data. These are only checked once every cell's blockstate has
+     * matched, as the blockstate check is a set lookup and the NBT check is not.
+     */
+    protected final int[] blockEntityCells;
+    /**
+     * The order in which cells are actually tested. Starts as <code>#selectivityOrder</code> and is periodically
+     * recalculated from <code>#rejections</code> so that the cells which reject most often are tested first.
+     */
+    protected volatile int[] evaluationOrder;
+    /**
+     * How many times each cell has rejected a candidate since the last recalculation of
+     * <code>#evaluationOrder</code>. These are only heuristics; they are updated without synchronization and lost
+     * updates from concurrent matching are of no consequence.
+     */
+    protected final int[] rejections;
+    protected int rejectionsSinceReorder;
+    /**
+     * Present only if every cell of this pattern is an exact blockstate, air or a wildcard.
+     */
+    @Nullable
+    protected final PatternHashMatcher hashMatcher;
 
     /**
      * Serverside
@@ -45,6 +124,123 @@ public class MultiblockPattern extends BlockPattern {
         this.palette = ImmutableList.copyOf(palette);
         this.totalBlocks = ImmutableList.copyOf(totalBlocks);
         this.serializedPattern = serializedPattern;
+
+        int cellCount = this.width * this.height * this.depth;
+        this.cells = new BlockInWorldPredicate[cellCount];
+        this.offsets = new int[CARDINAL.length][3 * cellCount];
+
+        Map<BlockInWorldPredicate, List<Integer>> cellsByPredicate = new IdentityHashMap<>();
+        for (int i = 0; i < this.width; ++i) {
+            for (int j = 0; j < this.height; ++j) {
+                for (int k = 0; k < this.depth; ++k) {
+                    int cell = i + this.width * (j + this.height * k);
+                    BlockInWorldPredicate predicate = pPattern[k][j][i];
+                    this.cells[cell] = predicate;
+
+                    for (Direction direction : CARDINAL) {
+                        BlockPos offset = translateAndRotate(BlockPos.ZERO, direction, Direction.UP, i, j, k);
+                        int[] offsetsForFacing = this.offsets[direction.get2DDataValue()];
+                        offsetsForFacing[3 * cell] = offset.getX();
+                        offsetsForFacing[3 * cell + 1] = offset.getY();
+                        offsetsForFacing[3 * cell + 2] = offset.getZ();
+                    }
+
+                    if (predicate == BlockInWorldPredicate.AIR || predicate == BlockInWorldPredicate.WILDCARD) continue;
+                    cellsByPredicate.computeIfAbsent(predicate, key -> new ArrayList<>()).add(cell);
+                }
+            }
+        }
+
+        this.orientations = this.distinctOrientations();
+
+        this.anchors = new BlockInWorldPredicate[cellsByPredicate.size()];
+        this.anchorCells = new int[cellsByPredicate.size()][];
+        int index = 0;
+        for (Map.Entry<BlockInWorldPredicate, List<Integer>> entry : cellsByPredicate.entrySet()) {
+            this.anchors[index] = entry.getKey();
+            this.anchorCells[index] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            index++;
+        }
+
+        List<Integer> orderedCells = new ArrayList<>(cellCount);
+        List<Integer> blockEntityCells = new ArrayList<>();
+        for (int cell = 0; cell < cellCount; cell++) {
+            BlockInWorldPredicate predicate = this.cells[cell];
+            if (predicate == BlockInWorldPredicate.WILDCARD) continue;
+            orderedCells.add(cell);
+            if (predicate.requiresBlockEntity()) blockEntityCells.add(cell);
+        }
+        orderedCells.sort(Comparator
+                .comparingInt((Integer cell) -> this.cells[cell] == BlockInWorldPredicate.AIR ? 1 : 0)
+                .thenComparingInt(cell -> {
+                    List<Integer> occupied = cellsByPredicate.get(this.cells[cell]);
+                    return occupied == null ? cellCount : occupied.size();
+                }));
+
+        this.selectivityOrder = orderedCells.stream().mapToInt(Integer::intValue).toArray();
+        this.blockEntityCells = blockEntityCells.stream().mapToInt(Integer::intValue).toArray();
+        this.evaluationOrder = this.selectivityOrder;
+        this.rejections = new int[cellCount];
+        this.hashMatcher = PatternHashMatcher.create(this);
+    }
+
+    /**
+     * Turning a placement by some multiple of 90 degrees about its anchor cell yields another placement anchored
+     * on the same predicate. If the pattern is symmetric under that turn, both placements test exactly the same
+     * world positions against exactly the same predicates, so only one of them needs to be tried. The pattern is
+     * turned by comparing the cell offsets of one facing against those of another; a turn is a symmetry if every
+     * cell lands on a cell holding the same predicate.
+     * <br><br>
+     * Predicates are compared by identity, and any predicate whose accepted states depend on rotation disables
+     * this entirely. Placements are never mirrored, so mirror symmetry saves nothing and isn't looked for.
+     */
+    protected Direction[] distinctOrientations() {
+        for (BlockInWorldPredicate predicate : this.cells) {
+            if (predicate.isRotationDependent()) return CARDINAL;
+        }
+
+        if (!this.isSymmetricUnder(2)) return CARDINAL;
+        if (!this.isSymmetricUnder(1)) return new Direction[]{Direction.NORTH, Direction.EAST};
+        return new Direction[]{Direction.NORTH};
+    }
+
+    /**
+     * Returns whether facing north and facing the passed number of quarter turns clockwise from north put the same
+     * predicates in the same places, up to translation.
+     */
+    protected boolean isSymmetricUnder(int quarterTurns) {
+        int[] north = this.offsets[Direction.NORTH.get2DDataValue()];
+        Direction turnedFacing = Direction.NORTH;
+        for (int i = 0; i < quarterTurns; i++) {
+            turnedFacing = turnedFacing.getClockWise();
+        }
+        int[] turned = this.offsets[turnedFacing.get2DDataValue()];
+
+        int[] translation = new int[3];
+        for (int axis = 0; axis < 3; axis++) {
+            int northMin = Integer.MAX_VALUE;
+            int turnedMin = Integer.MAX_VALUE;
+            for (int cell = 0; cell < this.cells.length; cell++) {
+                northMin = Math.min(northMin, north[3 * cell + axis]);
+                turnedMin = Math.min(turnedMin, turned[3 * cell + axis]);
+            }
+            translation[axis] = turnedMin - northMin;
+        }
+
+        Long2IntOpenHashMap turnedCells = new Long2IntOpenHashMap(this.cells.length);
+        turnedCells.defaultReturnValue(-1);
+        for (int cell = 0; cell < this.cells.length; cell++) {
+            turnedCells.put(BlockPos.asLong(turned[3 * cell], turned[3 * cell + 1], turned[3 * cell + 2]), cell);
+        }
+
+        for (int cell = 0; cell < this.cells.length; cell++) {
+            int other = turnedCells.get(BlockPos.asLong(
+                    north[3 * cell] + translation[0],
+                    north[3 * cell + 1] + translation[1],
+                    north[3 * cell + 2] + translation[2]));
+            if (other < 0 || this.cells[other] != this.cells[cell]) return false;
+        }
+        return true;
     }
 
     public boolean patternContains(BlockState state) {
@@ -56,41 +252,64 @@ public class MultiblockPattern extends BlockPattern {
         return false;
     }
 
+    /**
+     * Returned as is rather than copied; it must not be modified.
+     */
     @Nullable
     public CompoundTag getSerializedPattern() {
-        if (this.serializedPattern == null) return null;
-        return this.serializedPattern.copy();
+        return this.serializedPattern;
     }
 
     public ImmutableList<BlockInWorldPredicateBuilder> getPalette() {
-        ImmutableList.Builder<BlockInWorldPredicateBuilder> builder = ImmutableList.builder();
-        for (BlockInWorldPredicateBuilder state : this.palette) {
-            builder.add(state);
-        }
-        return builder.build();
+        return this.palette;
     }
 
-    public NonNullList<ItemStack> getTotalBlocks() {
-        NonNullList<ItemStack> toReturn = NonNullList.createWithCapacity(this.totalBlocks.size());
-        this.totalBlocks.forEach(stack -> toReturn.add(stack.copy()));
-        return toReturn;
+    /**
+     * Returned as is rather than copied; the stacks must not be modified.
+     */
+    public ImmutableList<ItemStack> getTotalBlocks() {
+        return this.totalBlocks;
     }
 
     /**
-     * Checks that the given pattern & rotation is at the block coordinates.
+     * Returns a pattern like this one whose serialized form and stacks of total blocks are copies, and so may be
+     * modified. The list holding the total blocks is still immutable, and the predicates, being immutable, are shared.
+     */
+    public MultiblockPattern mutableCopy() {
+        NonNullList<ItemStack> totalBlocks = NonNullList.createWithCapacity(this.totalBlocks.size());
+        this.totalBlocks.forEach(stack -> totalBlocks.add(stack.copy()));
+
+        return new MultiblockPattern(
+                (BlockInWorldPredicate[][][]) this.getPattern(),
+                this.palette,
+                totalBlocks,
+                this.serializedPattern == null ? null : this.serializedPattern.copy()
+        );
+    }
+
+    /**
+     * Checks that the given pattern & rotation is at the block coordinates. Retained for callers of the vanilla
+     * signature; this mod uses <code>#matchesAt</code> instead.
      */
     @Nullable
     @Override
     protected BlockPattern.BlockPatternMatch matches(BlockPos pPos, Direction pFinger, Direction pThumb, LoadingCache<BlockPos, BlockInWorld> pCache) {
+        if (pThumb != Direction.UP || pFinger.getAxis().isVertical()) return null;
+
         try {
-            for (int i = 0; i < this.width; ++i) {
-                for (int j = 0; j < this.height; ++j) {
-                    for (int k = 0; k < this.depth; ++k) {
-                        boolean hasMatchAt = ((BlockInWorldPredicate) this.pattern[k][j][i]).setFacing(pFinger).test(pCache.getUnchecked(translateAndRotate(pPos, pFinger, pThumb, i, j, k)));
-                        if (!hasMatchAt) return null;
-                    }
+            int[] offsetsForFacing = this.offsets[pFinger.get2DDataValue()];
+            for (int cell : this.evaluationOrder) {
+                BlockState state = pCache.getUnchecked(pPos.offset(offsetsForFacing[3 * cell], offsetsForFacing[3 * cell + 1], offsetsForFacing[3 * cell + 2])).getState();
+                if (state == null || !this.cells[cell].testState(state, pFinger)) {
+                    this.recordRejection(cell);
+                    return null;
                 }
             }
+
+            for (int cell : this.blockEntityCells) {
+                BlockInWorld blockInWorld = pCache.getUnchecked(pPos.offset(offsetsForFacing[3 * cell], offsetsForFacing[3 * cell + 1], offsetsForFacing[3 * cell + 2]));
+                if (!this.cells[cell].testBlockEntity(blockInWorld.getEntity())) return null;
+            }
         } catch (RuntimeException e) {
             LOGGER.error("Exception while testing block predicates against world:", e);
             return null;
@@ -99,33 +318,239 @@ public class MultiblockPattern extends BlockPattern {
         return new BlockPattern.BlockPatternMatch(pPos, pFinger, pThumb, pCache, this.width, this.height, this.depth);
     }
 
+    /**
+     * Checks that the given pattern is at the block coordinates while facing the given cardinal direction. Walks the
+     * flattened cells in <code>#evaluationOrder</code> using the pre-rotated offsets for that direction, then checks
+     * NBT for the cells requiring it if <code>checkBlockEntities</code> is true. Positions in unloaded chunks never
+     * match.
+     */
+    protected boolean matchesAt(PatternLevelView pView, BlockPos pPos, Direction pFinger, boolean checkBlockEntities) {
+        return this.cellsPassed(pView, pPos, pFinger, checkBlockEntities) == FULL_MATCH;
+    }
+
+    /**
+     * Does the work of <code>#matchesAt</code>, returning how many cells of <code>#evaluationOrder</code> passed
+     * before one failed, or <code>#FULL_MATCH</code>. A candidate failing only on NBT passed every cell. This is how
+     * a search tells its near misses apart at no extra cost.
+     */
+    protected int cellsPassed(PatternLevelView pView, BlockPos pPos, Direction pFinger, boolean checkBlockEntities) {
+        int[] offsetsForFacing = this.offsets[pFinger.get2DDataValue()];
+        int[] order = this.evaluationOrder;
+        int originX = pPos.getX();
+        int originY = pPos.getY();
+        int originZ = pPos.getZ();
+
+        try {
+            for (int index = 0; index < order.length; index++) {
+                int cell = order[index];
+                BlockState state = pView.getBlockState(originX + offsetsForFacing[3 * cell], originY + offsetsForFacing[3 * cell + 1], originZ + offsetsForFacing[3 * cell + 2]);
+                if (state == null || !this.cells[cell].testState(state, pFinger)) {
+                    this.recordRejection(cell);
+                    return index;
+                }
+            }
+
+            if (!checkBlockEntities) return FULL_MATCH;
+            for (int cell : this.blockEntityCells) {
+                if (!pView.testBlockEntity(this.cells[cell], originX + offsetsForFacing[3 * cell], originY + offsetsForFacing[3 * cell + 1], originZ + offsetsForFacing[3 * cell + 2])) return order.length;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Exception while testing block predicates against world:", e);
+            return 0;
+        }
+
+        return FULL_MATCH;
+    }
+
+    /**
+     * Creates a <code>PatternLevelView</code> covering every position any cell could occupy in a match where some
+     * cell lies at the passed position, in any facing.
+     */
+    public PatternLevelView createView(LevelReader pLevel, BlockPos pPos) {
+        return new PatternLevelView(pLevel, this.searchMin(pPos), this.searchMax(pPos));
+    }
+
+    /**
+     * As <code>#createView</code>, but returns a snapshot which may be searched off the main thread.
+     */
+    public PatternLevelView createSnapshot(LevelReader pLevel, BlockPos pPos) {
+        return PatternLevelView.snapshot(pLevel, this.searchMin(pPos), this.searchMax(pPos));
+    }
+
+    /**
+     * The minimum corner of the box containing every position any cell could occupy in a match where some cell lies
+     * at the passed position, in any facing.
+     */
+    protected BlockPos searchMin(BlockPos pPos) {
+        int horizontalReach = Math.max(this.width, this.depth) - 1;
+        return pPos.offset(-horizontalReach, -(this.height - 1), -horizontalReach);
+    }
+
+    /**
+     * See <code>#searchMin</code>.
+     */
+    protected BlockPos searchMax(BlockPos pPos) {
+        int horizontalReach = Math.max(this.width, this.depth) - 1;
+        return pPos.offset(horizontalReach, this.height - 1, horizontalReach);
+    }
+
+    protected void recordRejection(int cell) {
+        this.rejections[cell]++;
+        if (++this.rejectionsSinceReorder < REORDER_INTERVAL) return;
+        this.rejectionsSinceReorder = 0;
+
+        int[] rejectionCounts = this.rejections.clone();
+        for (int i = 0; i < this.rejections.length; i++) {
+            this.rejections[i] >>= 1;
+        }
+
+        Integer[] reordered = new Integer[this.selectivityOrder.length];
+        for (int i = 0; i < reordered.length; i++) {
+            reordered[i] = i;
+        }
+        // indices into #selectivityOrder are sorted so that the sort is stable with respect to it
+        Arrays.sort(reordered, Comparator.comparingInt((Integer i) -> -rejectionCounts[this.selectivityOrder[i]]).thenComparingInt(i -> i));
+
+        int[] newOrder = new int[reordered.length];
+        for (int i = 0; i < newOrder.length; i++) {
+            newOrder[i] = this.selectivityOrder[reordered[i]];
+        }
+        this.evaluationOrder = newOrder;
+    }
+
     /**
      * In the superclass, this method creates an <code>Iterator</code> containing all the <code>BlockPos</code> inside
-     * a volume specified by the positions of its furthest-apart corners. This volume is equal to a cube of a length
-     * equal to the longest side of the <code>BlockPattern</code>. For every position in this volume, and for every
-     * possible direction the pattern may be facing, a test is conducted to see if the pattern exists there.
+     * a volume specified by the positions of its furthest-apart corners, then tests every one of them in every
+     * direction. That is upwards of <code>(2n - 1)^3 * 4</code> calls to <code>#matches</code> for a pattern whose
+     * longest side is n.
      * <br><br>
-     * This is explained in detail here to be referenced when I optimize this logic... For now, I've actually made the
-     * performance worse since the previous volume was too small to properly account for asymmetric 3D patterns.
+     * Instead, the block at the clicked position must occupy one of the cells of the match. Each distinct predicate
+     * in the pattern knows which cells it occupies, so only predicates which could accept the clicked block are
+     * considered. Every one of their cells produces exactly one candidate origin per orientation: the one placing
+     * that cell under the cursor. Orientations which a symmetric pattern would repeat are skipped. Air and wildcard
+     * cells are never used as anchors; clicking a block which is only present in the structure as part of a wildcard
+     * will not find it.
      * <br><br>
-     * I've since only made this check 4 orientations as opposed to 24; namely the four cardinal directions while upright.
-     * This should significantly improve performance for minimal tradeoff. I've also added an early return if the checked
-     * block at the <code>BlockPos</code> does not exist in the recipe.
+     * Before any candidate is tested, <code>#lacksRequiredBlocks</code> gives up on areas which don't hold enough
+     * of some block for the pattern to be anywhere in them.
      */
     @Nullable
     @Override
     public BlockPatternMatch find(LevelReader pLevel, BlockPos pPos) {
-        LoadingCache<BlockPos, BlockInWorld> loadingcache = createLevelCache(pLevel, false);
-        int i = Math.max(Math.max(this.getWidth(), this.getHeight()), this.getDepth());
+        return this.search(pLevel, pPos, null).match();
+    }
 
-        BlockState blockAt = pLevel.getBlockState(pPos);
-        if (!this.patternContains(blockAt)) return null;
+    @Nullable
+    public BlockPatternMatch findExact(LevelReader pLevel, BlockPos pPos, int[] schematicBlockOffset) {
+        return this.searchExact(pLevel, pPos, schematicBlockOffset, null).match();
+    }
+
+    /**
+     * As <code>#find</code>, but also reports what is wrong with the nearest miss if nothing was found.
+     */
+    public MatchResult findWithReport(LevelReader pLevel, BlockPos pPos) {
+        return this.search(pLevel, pPos, new PartialMatch());
+    }
+
+    /**
+     * As <code>#findExact</code>, but also reports what is wrong with the structure if it doesn't match.
+     */
+    public MatchResult findExactWithReport(LevelReader pLevel, BlockPos pPos, int[] schematicBlockOffset) {
+        return this.searchExact(pLevel, pPos, schematicBlockOffset, new PartialMatch());
+    }
+
+    /**
+     * As <code>#findWithReport</code>, but always searches the level itself, NBT included, rather than a snapshot.
+     * For callers which have already searched a snapshot and had the placement found fail on NBT.
+     */
+    public MatchResult findLiveWithReport(LevelReader pLevel, BlockPos pPos) {
+        return this.searchLive(pLevel, pPos, new PartialMatch());
+    }
+
+    protected MatchResult search(LevelReader pLevel, BlockPos pPos, @Nullable PartialMatch partial) {
+        if (this.searchesInParallel()) {
+            PatternLevelView snapshot = this.createSnapshot(pLevel, pPos);
+            Placement placement = this.locate(snapshot, pPos, false, partial);
+            // NBT can only reject what the snapshot accepted
+            if (placement == null) return MatchResult.failed(this.report(snapshot, partial));
+            BlockPatternMatch match = this.verify(pLevel, placement);
+            if (match != null) return MatchResult.found(match);
+            // the placement found failed on NBT, but another may not; fall through to the ordinary search
+        }
 
-        for(BlockPos blockpos : BlockPos.betweenClosed(pPos.offset(-i + 1, -i + 1, -i + 1), pPos.offset(i - 1, i - 1, i - 1))) {
-            for (Direction direction : CARDINAL) {
-                BlockPattern.BlockPatternMatch match = this.matches(blockpos, direction, Direction.UP, loadingcache);
-                if (match != null) {
-                    return match;
+        return this.searchLive(pLevel, pPos, partial);
+    }
+
+    protected MatchResult searchLive(LevelReader pLevel, BlockPos pPos, @Nullable PartialMatch partial) {
+        PatternLevelView view = this.createView(pLevel, pPos);
+        Placement placement = this.locate(view, pPos, true, partial);
+        if (placement == null) return MatchResult.failed(this.report(view, partial));
+        return MatchResult.found(this.createMatch(pLevel, placement.origin(), placement.facing()));
+    }
+
+    protected MatchResult searchExact(LevelReader pLevel, BlockPos pPos, int[] schematicBlockOffset, @Nullable PartialMatch partial) {
+        PatternLevelView view = this.createView(pLevel, pPos);
+        Placement placement = this.locateExact(view, pPos, schematicBlockOffset, true, partial);
+        if (placement == null) return MatchResult.failed(this.report(view, partial));
+        return MatchResult.found(this.createMatch(pLevel, placement.origin(), placement.facing()));
+    }
+
+    /**
+     * The search behind <code>#find</code>. If <code>checkBlockEntities</code> is false, NBT is not checked and the
+     * returned placement must be confirmed with <code>#verify</code> before it is acted on. Snapshots of large enough
+     * patterns are searched on several threads by <code>PatternSearchTask</code>.
+     */
+    @Nullable
+    public Placement locate(PatternLevelView pView, BlockPos pPos, boolean checkBlockEntities) {
+        return this.locate(pView, pPos, checkBlockEntities, null);
+    }
+
+    /**
+     * As <code>#locate</code>, offering every candidate which fails to <code>partial</code> if it is not null. As the
+     * hash of a candidate says whether it is wrong but not how wrong, such a search first looks for a match with the
+     * hash alone, and only tests every candidate for the report once that comes up empty.
+     */
+    @Nullable
+    public Placement locate(PatternLevelView pView, BlockPos pPos, boolean checkBlockEntities, @Nullable PartialMatch partial) {
+        BlockState blockAt = pView.getBlockState(pPos.getX(), pPos.getY(), pPos.getZ());
+        if (blockAt == null || !this.patternContains(blockAt)) return null;
+
+        long candidates = 0;
+        for (int anchor = 0; anchor < this.anchors.length; anchor++) {
+            if (this.anchors[anchor].acceptsBlock(blockAt)) candidates += (long) this.anchorCells[anchor].length * this.orientations.length;
+        }
+        if (this.lacksRequiredBlocks(pView, candidates)) return null;
+
+        PatternHashMatcher.Search hashSearch = this.prepareHashSearch(pView, pPos, candidates);
+        if (hashSearch != null && partial != null) {
+            Placement placement = this.searchCandidates(pView, pPos, blockAt, hashSearch, checkBlockEntities, null);
+            if (placement != null) return placement;
+            hashSearch = null;
+        }
+
+        return this.searchCandidates(pView, pPos, blockAt, hashSearch, checkBlockEntities, partial);
+    }
+
+    /**
+     * Tests every candidate origin placing a cell which accepts <code>blockAt</code> at the passed position.
+     */
+    @Nullable
+    protected Placement searchCandidates(PatternLevelView pView, BlockPos pPos, BlockState blockAt, @Nullable PatternHashMatcher.Search hashSearch, boolean checkBlockEntities, @Nullable PartialMatch partial) {
+        if (pView.isSnapshot() && this.searchesInParallel()) {
+            IntArrayList candidateCells = new IntArrayList();
+            for (int anchor = 0; anchor < this.anchors.length; anchor++) {
+                if (this.anchors[anchor].acceptsBlock(blockAt)) candidateCells.addElements(candidateCells.size(), this.anchorCells[anchor]);
+            }
+            return PatternSearchTask.search(this, pView, pPos, candidateCells.toIntArray(), hashSearch, checkBlockEntities, partial);
+        }
+
+        for (int anchor = 0; anchor < this.anchors.length; anchor++) {
+            if (!this.anchors[anchor].acceptsBlock(blockAt)) continue;
+
+            for (int cell : this.anchorCells[anchor]) {
+                for (Direction direction : this.orientations) {
+                    Placement placement = this.tryCandidate(pView, pPos, cell, direction, hashSearch, checkBlockEntities, partial);
+                    if (placement != null) return placement;
                 }
             }
         }
@@ -133,15 +558,255 @@ public class MultiblockPattern extends BlockPattern {
         return null;
     }
 
+    /**
+     * Tests the candidate origin placing the passed cell at the passed position, facing the passed direction.
+     */
     @Nullable
-    public BlockPatternMatch findExact(LevelReader pLevel, BlockPos pPos, int[] schematicBlockOffset) {
+    protected Placement tryCandidate(PatternLevelView pView, BlockPos pPos, int cell, Direction direction, @Nullable PatternHashMatcher.Search hashSearch, boolean checkBlockEntities, @Nullable PartialMatch partial) {
+        int[] offsetsForFacing = this.offsets[direction.get2DDataValue()];
+        BlockPos origin = pPos.offset(-offsetsForFacing[3 * cell], -offsetsForFacing[3 * cell + 1], -offsetsForFacing[3 * cell + 2]);
+        if (hashSearch != null && !hashSearch.mayMatch(origin, direction)) return null;
+
+        int cellsPassed = this.cellsPassed(pView, origin, direction, checkBlockEntities);
+        if (cellsPassed == FULL_MATCH) return new Placement(origin, direction);
+        if (partial != null) partial.offer(origin, direction, cellsPassed);
+        return null;
+    }
+
+    /**
+     * Whether this pattern is large enough to be searched for on several threads, per
+     * <code>Config#PARALLEL_SEARCH_VOLUME</code>. Only snapshots are searched in parallel.
+     */
+    protected boolean searchesInParallel() {
+        int threshold = Config.PARALLEL_SEARCH_VOLUME.get();
+        return threshold > 0 && this.cells.length >= threshold;
+    }
+
+    /**
+     * Hashing the search volume costs about as much as testing a single cell at each of its positions. That only
+     * pays off when there are enough candidate origins for them to cost more even if each were rejected early, so
+     * this returns null unless this pattern has a <code>PatternHashMatcher</code> and there are.
+     */
+    @Nullable
+    protected PatternHashMatcher.Search prepareHashSearch(PatternLevelView pView, BlockPos pPos, long candidates) {
+        if (this.hashMatcher == null) return null;
+
+        BlockPos min = this.searchMin(pPos);
+        BlockPos max = this.searchMax(pPos);
+        long volume = (long) (max.getX() - min.getX() + 1) * (max.getY() - min.getY() + 1) * (max.getZ() - min.getZ() + 1);
+        if (candidates * Math.min(this.cells.length, 8) < volume) return null;
+
+        return this.hashMatcher.prepare(pView, min, max);
+    }
+
+    /**
+     * Returns true if the passed view certainly can't hold this pattern anywhere, because it holds fewer blocks
+     * which could satisfy some predicate than the pattern has cells for it. Only the blocks are compared, not their
+     * properties or NBT, so a return of false proves nothing.
+     * <br><br>
+     * The section palettes are checked first, which rejects a view missing some block altogether for next to
+     * nothing. Actually counting blocks costs a pass over every section of the view, so it is only done when there
+     * are enough candidate origins for it to pay off.
+     */
+    protected boolean lacksRequiredBlocks(PatternLevelView pView, long candidates) {
+        for (BlockInWorldPredicate anchor : this.anchors) {
+            if (!pView.mayContain(anchor::acceptsBlock)) return true;
+        }
+
+        if (candidates * Math.min(this.cells.length, 8) < (long) pView.getLoadedSectionCount() * SECTION_COUNT_COST) return false;
+
+        Reference2IntOpenHashMap<BlockState> histogram = pView.getHistogram();
+        for (int anchor = 0; anchor < this.anchors.length; anchor++) {
+            int required = this.anchorCells[anchor].length;
+            int present = 0;
+            for (Reference2IntMap.Entry<BlockState> entry : histogram.reference2IntEntrySet()) {
+                if (!this.anchors[anchor].acceptsBlock(entry.getKey())) continue;
+                present += entry.getIntValue();
+                if (present >= required) break;
+            }
+            if (present < required) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The search behind <code>#findExact</code>. See <code>#locate</code>.
+     */
+    @Nullable
+    public Placement locateExact(PatternLevelView pView, BlockPos pPos, int[] schematicBlockOffset, boolean checkBlockEntities) {
+        return this.locateExact(pView, pPos, schematicBlockOffset, checkBlockEntities, null);
+    }
+
+    @Nullable
+    public Placement locateExact(PatternLevelView pView, BlockPos pPos, int[] schematicBlockOffset, boolean checkBlockEntities, @Nullable PartialMatch partial) {
         if (schematicBlockOffset.length != 3) return null;
-        LoadingCache<BlockPos, BlockInWorld> loadingcache = createLevelCache(pLevel, false);
-        BlockState blockAt = pLevel.getBlockState(pPos);
-        if (!blockAt.is(SCHEMATIC_BLOCK.get()) || !this.patternContains(blockAt)) return null;
-        Direction direction = blockAt.getValue(HORIZONTAL_FACING);
-        BlockPos offsetPos = translateAndRotate(pPos, direction, Direction.UP, -schematicBlockOffset[0], -schematicBlockOffset[1], -schematicBlockOffset[2]);
-        return this.matches(offsetPos, direction, Direction.UP, loadingcache);
+        BlockState blockAt = pView.getBlockState(pPos.getX(), pPos.getY(), pPos.getZ());
+        if (blockAt == null || !blockAt.is(SCHEMATIC_BLOCK.get()) || !this.patternContains(blockAt)) return null;
+        Placement placement = placementOfSchematicBlock(pPos, blockAt.getValue(HORIZONTAL_FACING), schematicBlockOffset);
+
+        int cellsPassed = this.cellsPassed(pView, placement.origin(), placement.facing(), checkBlockEntities);
+        if (cellsPassed == FULL_MATCH) return placement;
+        if (partial != null) partial.offer(placement.origin(), placement.facing(), cellsPassed);
+        return null;
+    }
+
+    /**
+     * Returns the only placement a pattern may have given its schematic block lies at the passed position and faces
+     * the passed direction.
+     */
+    public static Placement placementOfSchematicBlock(BlockPos schematicBlockPos, Direction facing, int[] schematicBlockOffset) {
+        BlockPos origin = translateAndRotate(schematicBlockPos, facing, Direction.UP, -schematicBlockOffset[0], -schematicBlockOffset[1], -schematicBlockOffset[2]);
+        return new Placement(origin, facing);
+    }
+
+    public int getCellCount() {
+        return this.cells.length;
+    }
+
+    /**
+     * Returns the cell of this pattern lying at the passed position when placed as given, or -1 if it lies outside.
+     */
+    public int cellAt(Placement placement, BlockPos pPos) {
+        Vec3i finger = placement.facing().getNormal();
+        Vec3i palm = finger.cross(Direction.UP.getNormal());
+        int dx = pPos.getX() - placement.origin().getX();
+        int dy = pPos.getY() - placement.origin().getY();
+        int dz = pPos.getZ() - placement.origin().getZ();
+
+        int i = dx * palm.getX() + dz * palm.getZ();
+        int j = -dy;
+        int k = dx * finger.getX() + dz * finger.getZ();
+        if (i < 0 || i >= this.width || j < 0 || j >= this.height || k < 0 || k >= this.depth) return -1;
+        return i + this.width * (j + this.height * k);
+    }
+
+    /**
+     * Returns the world position of the passed cell when this pattern is placed as given.
+     */
+    public BlockPos positionOf(Placement placement, int cell) {
+        int[] offsetsForFacing = this.offsets[placement.facing().get2DDataValue()];
+        return placement.origin().offset(offsetsForFacing[3 * cell], offsetsForFacing[3 * cell + 1], offsetsForFacing[3 * cell + 2]);
+    }
+
+    /**
+     * Tests a single cell of this pattern placed as given, NBT included. Wildcards always pass.
+     */
+    public boolean testCell(PatternLevelView pView, Placement placement, int cell) {
+        return this.testCell(pView, placement, cell, true);
+    }
+
+    protected boolean testCell(PatternLevelView pView, Placement placement, int cell, boolean checkBlockEntities) {
+        BlockInWorldPredicate predicate = this.cells[cell];
+        if (predicate == BlockInWorldPredicate.WILDCARD) return true;
+
+        BlockPos pos = this.positionOf(placement, cell);
+        try {
+            BlockState state = pView.getBlockState(pos.getX(), pos.getY(), pos.getZ());
+            if (state == null || !predicate.testState(state, placement.facing())) return false;
+            return !checkBlockEntities || !predicate.requiresBlockEntity() || pView.testBlockEntity(predicate, pos.getX(), pos.getY(), pos.getZ());
+        } catch (RuntimeException e) {
+            LOGGER.error("Exception while testing block predicates against world:", e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks the passed placement against the level as it is now, NBT included. Used to confirm a placement found
+     * in a snapshot before anything is done with it.
+     */
+    @Nullable
+    public BlockPatternMatch verify(LevelReader pLevel, Placement placement) {
+        if (!this.matchesAt(this.createView(pLevel, placement.origin()), placement.origin(), placement.facing(), true)) return null;
+        return this.createMatch(pLevel, placement.origin(), placement.facing());
+    }
+
+    protected BlockPatternMatch createMatch(LevelReader pLevel, BlockPos pPos, Direction pFinger) {
+        return new BlockPattern.BlockPatternMatch(pPos, pFinger, Direction.UP, createLevelCache(pLevel, false), this.width, this.height, this.depth);
+    }
+
+    /**
+     * Tests every cell of the nearest miss offered to <code>partial</code>, or returns null if nothing was offered.
+     * NBT is only checked if the view isn't a snapshot.
+     */
+    @Nullable
+    public MismatchReport report(PatternLevelView pView, @Nullable PartialMatch partial) {
+        if (partial == null || partial.getPlacement() == null) return null;
+        return this.report(pView, partial.getPlacement());
+    }
+
+    public MismatchReport report(PatternLevelView pView, Placement placement) {
+        IntArrayList mismatched = new IntArrayList();
+        for (int cell : this.selectivityOrder) {
+            if (!this.testCell(pView, placement, cell, !pView.isSnapshot())) mismatched.add(cell);
+        }
+        return this.report(placement, mismatched.toIntArray());
+    }
+
+    /**
+     * Creates a report for the passed placement where the passed cells are wrong and every other cell is right.
+     */
+    public MismatchReport report(Placement placement, int[] mismatchedCells) {
+        int reported = Math.min(mismatchedCells.length, MAX_REPORTED_MISMATCHES);
+        List<BlockPos> positions = new ArrayList<>(reported);
+        List<ItemStack> expected = new ArrayList<>(reported);
+        for (int i = 0; i < reported; i++) {
+            positions.add(this.positionOf(placement, mismatchedCells[i]));
+            expected.add(this.cells[mismatchedCells[i]].getDisplayStack());
+        }
+        int total = this.selectivityOrder.length;
+        return new MismatchReport(placement, total - mismatchedCells.length, total, positions, expected);
+    }
+
+    /**
+     * Where a pattern was found and which way it faces. <code>origin</code> is the world position of the first cell.
+     */
+    public record Placement(BlockPos origin, Direction facing) {}
+
+    /**
+     * What a search found. Exactly one of <code>match</code> and <code>mismatch</code> is present, unless the search
+     * failed without any candidate to report on, in which case both are null.
+     */
+    public record MatchResult(@Nullable BlockPatternMatch match, @Nullable MismatchReport mismatch) {
+        public static MatchResult found(BlockPatternMatch match) {
+            return new MatchResult(match, null);
+        }
+
+        public static MatchResult failed(@Nullable MismatchReport mismatch) {
+            return new MatchResult(null, mismatch);
+        }
+    }
+
+    /**
+     * What is wrong with a placement which came close to matching. <code>satisfiedCells</code> and
+     * <code>totalCells</code> leave out wildcards. At most <code>#MAX_REPORTED_MISMATCHES</code> of the wrong cells
+     * are listed, each with an item showing what belongs there.
+     */
+    public record MismatchReport(Placement placement, int satisfiedCells, int totalCells, List<BlockPos> mismatches, List<ItemStack> expected) {}
+
+    /**
+     * Collects the candidate of a search which got furthest through <code>#evaluationOrder</code> before failing.
+     * That candidate isn't necessarily the one with the most satisfied cells, but it is the one the search itself
+     * saw the most of, and finding it costs nothing beyond a comparison per failed candidate. Safe to offer to from
+     * several threads.
+     */
+    public static class PartialMatch {
+        protected volatile int cellsPassed = -1;
+        @Nullable
+        protected volatile Placement placement;
+
+        protected void offer(BlockPos origin, Direction facing, int cellsPassed) {
+            if (cellsPassed <= this.cellsPassed) return;
+            synchronized (this) {
+                if (cellsPassed <= this.cellsPassed) return;
+                this.placement = new Placement(origin, facing);
+                this.cellsPassed = cellsPassed;
+            }
+        }
+
+        @Nullable
+        public Placement getPlacement() {
+            return this.placement;
+        }
     }
 
     /**
@@ -234,6 +899,11 @@ public class MultiblockPattern extends BlockPattern {
             paletteMap.put(key, builder);
         }
 
+        Map<String, BlockInWorldPredicate> builtPalette = new HashMap<>(paletteMap.size());
+        for (Map.Entry<String, BlockInWorldPredicateBuilder> entry : paletteMap.entrySet()) {
+            builtPalette.put(entry.getKey(), entry.getValue().build());
+        }
+
         BlockInWorldPredicate[][][] predicate = (BlockInWorldPredicate[][][]) Array.newInstance(BlockInWorldPredicate.class, pattern.size(), patternHeight, patternWidth);
 
         for(int i = 0; i < pattern.size(); ++i) {
@@ -247,7 +917,7 @@ public class MultiblockPattern extends BlockPattern {
                     } else if (stringAt.equals(" ")) {
                         blockPredicate = BlockInWorldPredicate.AIR;
                     } else {
-                        blockPredicate = paletteMap.get(stringAt).build();
+                        blockPredicate = builtPalette.get(stringAt);
                     }
 
                     predicate[i][j][k] = blockPredicate;
@@ -0,0 +1,267 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicate;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.Nullable;
+
+import static io.github.kawaiicakes.nobullship.multiblock.MultiblockPattern.CARDINAL;
+
+/**
+ * A 3D Rabin-Karp filter for patterns made up entirely of exact blockstates, such as those captured with the magic
+ * wand. Each position of the search volume is given a canonical id, and every axis-aligned box of the volume gets
+ * a polynomial hash through 3D prefix sums. A candidate origin is then rejected in constant time if the hash of the
+ * box it would occupy differs from that of the pattern; only hash hits go on to
+ * <code>MultiblockPattern#matchesAt</code>.
+ * <br><br>
+ * Ids are canonicalized so the hash accepts everything the predicates do: all air reads as air, and corner stairs
+ * read the same as their visually-identical counterpart. Wildcard cells can't be hashed; up to
+ * <code>#MAX_WILDCARDS</code> of them are subtracted back out of each candidate's hash individually. Arithmetic is
+ * done modulo 2^64 with odd bases.
+ */
+public class PatternHashMatcher {
+    /**
+     * Patterns with more wildcards than this aren't worth hashing.
+     */
+    public static final int MAX_WILDCARDS = 64;
+    /**
+     * The largest search volume, in blocks, that will be hashed. The prefix sums take 8 bytes per block.
+     */
+    public static final int MAX_VOLUME = 1 << 19;
+    protected static final long BASE_X = 0x9E3779B97F4A7C15L;
+    protected static final long BASE_Y = 0xC2B2AE3D27D4EB4FL;
+    protected static final long BASE_Z = 0x165667B19E3779F9L;
+    protected static final long UNLOADED = -1L;
+
+    protected final MultiblockPattern pattern;
+    /**
+     * The smallest offset of any cell from the origin of a match, by <code>Direction#get2DDataValue</code> then axis.
+     */
+    protected final int[][] minOffsets;
+    /**
+     * The size of the box a match occupies along each axis, by <code>Direction#get2DDataValue</code> then axis.
+     */
+    protected final int[][] sizes;
+    /**
+     * The hash of the pattern for each facing, relative to the minimum corner of the box it occupies.
+     */
+    protected final long[] expectedHashes;
+    /**
+     * The offsets of wildcard cells from the minimum corner, by <code>Direction#get2DDataValue</code> then
+     * <code>3 * wildcard + axis</code>.
+     */
+    protected final int[][] wildcardOffsets;
+
+    protected PatternHashMatcher(MultiblockPattern pattern, long[] cellIds, int[] wildcardCells) {
+        this.pattern = pattern;
+        this.minOffsets = new int[CARDINAL.length][3];
+        this.sizes = new int[CARDINAL.length][3];
+        this.expectedHashes = new long[CARDINAL.length];
+        this.wildcardOffsets = new int[CARDINAL.length][3 * wildcardCells.length];
+
+        for (Direction direction : CARDINAL) {
+            int facing = direction.get2DDataValue();
+            int[] offsets = pattern.offsets[facing];
+            int[] min = this.minOffsets[facing];
+            int[] max = new int[3];
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Integer.MAX_VALUE;
+                max[axis] = Integer.MIN_VALUE;
+            }
+            for (int cell = 0; cell < cellIds.length; cell++) {
+                for (int axis = 0; axis < 3; axis++) {
+                    min[axis] = Math.min(min[axis], offsets[3 * cell + axis]);
+                    max[axis] = Math.max(max[axis], offsets[3 * cell + axis]);
+                }
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                this.sizes[facing][axis] = max[axis] - min[axis] + 1;
+            }
+
+            long[] powersX = powers(BASE_X, this.sizes[facing][0]);
+            long[] powersY = powers(BASE_Y, this.sizes[facing][1]);
+            long[] powersZ = powers(BASE_Z, this.sizes[facing][2]);
+
+            long hash = 0;
+            for (int cell = 0; cell < cellIds.length; cell++) {
+                if (cellIds[cell] == UNLOADED) continue;
+                int dx = offsets[3 * cell] - min[0];
+                int dy = offsets[3 * cell + 1] - min[1];
+                int dz = offsets[3 * cell + 2] - min[2];
+                hash += cellIds[cell] * powersX[dx] * powersY[dy] * powersZ[dz];
+            }
+            this.expectedHashes[facing] = hash;
+
+            for (int wildcard = 0; wildcard < wildcardCells.length; wildcard++) {
+                int cell = wildcardCells[wildcard];
+                for (int axis = 0; axis < 3; axis++) {
+                    this.wildcardOffsets[facing][3 * wildcard + axis] = offsets[3 * cell + axis] - min[axis];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a matcher for the passed pattern, or null if any of its cells require anything but an exact
+     * blockstate, air or a wildcard.
+     */
+    @Nullable
+    public static PatternHashMatcher create(MultiblockPattern pattern) {
+        long[] cellIds = new long[pattern.cells.length];
+        int wildcards = 0;
+        for (int cell = 0; cell < pattern.cells.length; cell++) {
+            BlockInWorldPredicate predicate = pattern.cells[cell];
+            if (predicate == BlockInWorldPredicate.WILDCARD) {
+                cellIds[cell] = UNLOADED;
+                wildcards++;
+                continue;
+            }
+            if (predicate == BlockInWorldPredicate.AIR) continue;
+
+            BlockState exactState = predicate.getExactState();
+            if (exactState == null) return null;
+            cellIds[cell] = canonicalId(exactState);
+        }
+        if (wildcards > MAX_WILDCARDS) return null;
+
+        int[] wildcardCells = new int[wildcards];
+        int index = 0;
+        for (int cell = 0; cell < pattern.cells.length; cell++) {
+            if (pattern.cells[cell] == BlockInWorldPredicate.WILDCARD) wildcardCells[index++] = cell;
+        }
+
+        return new PatternHashMatcher(pattern, cellIds, wildcardCells);
+    }
+
+    /**
+     * Air is 0; corner stairs share an id with their counterpart. Everything else is its state id plus one.
+     */
+    protected static long canonicalId(BlockState state) {
+        if (state.isAir()) return 0;
+        int id = Block.getId(state);
+        BlockState counterpart = BlockInWorldPredicate.getStairsCounterpart(state);
+        if (counterpart != null) id = Math.min(id, Block.getId(counterpart));
+        return id + 1L;
+    }
+
+    protected static long[] powers(long base, int count) {
+        long[] toReturn = new long[count + 1];
+        toReturn[0] = 1;
+        for (int i = 1; i <= count; i++) {
+            toReturn[i] = toReturn[i - 1] * base;
+        }
+        return toReturn;
+    }
+
+    /**
+     * Hashes the box of the passed view whose minimum corner is <code>min</code>, returning a
+     * <code>Search</code> through which candidate origins inside it may be tested. Returns null if the box is too big.
+     */
+    @Nullable
+    public Search prepare(PatternLevelView view, BlockPos min, BlockPos max) {
+        int sizeX = max.getX() - min.getX() + 1;
+        int sizeY = max.getY() - min.getY() + 1;
+        int sizeZ = max.getZ() - min.getZ() + 1;
+        if ((long) sizeX * sizeY * sizeZ > MAX_VOLUME) return null;
+        return new Search(view, min, sizeX, sizeY, sizeZ);
+    }
+
+    public class Search {
+        protected final PatternLevelView view;
+        protected final int minX;
+        protected final int minY;
+        protected final int minZ;
+        protected final int sizeX;
+        protected final int sizeY;
+        protected final int sizeZ;
+        protected final long[] powersX;
+        protected final long[] powersY;
+        protected final long[] powersZ;
+        /**
+         * Inclusive prefix sums of the hash terms, indexed by <code>x + (sizeX + 1) * (y + (sizeY + 1) * z)</code>
+         * with each coordinate offset by one.
+         */
+        protected final long[] prefix;
+
+        protected Search(PatternLevelView view, BlockPos min, int sizeX, int sizeY, int sizeZ) {
+            this.view = view;
+            this.minX = min.getX();
+            this.minY = min.getY();
+            this.minZ = min.getZ();
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.powersX = powers(BASE_X, sizeX);
+            this.powersY = powers(BASE_Y, sizeY);
+            this.powersZ = powers(BASE_Z, sizeZ);
+            this.prefix = new long[(sizeX + 1) * (sizeY + 1) * (sizeZ + 1)];
+
+            for (int z = 1; z <= sizeZ; z++) {
+                for (int y = 1; y <= sizeY; y++) {
+                    for (int x = 1; x <= sizeX; x++) {
+                        long term = this.idAt(x - 1, y - 1, z - 1) * this.powersX[x - 1] * this.powersY[y - 1] * this.powersZ[z - 1];
+                        this.prefix[this.index(x, y, z)] = term
+                                + this.prefix[this.index(x - 1, y, z)]
+                                + this.prefix[this.index(x, y - 1, z)]
+                                + this.prefix[this.index(x, y, z - 1)]
+                                - this.prefix[this.index(x - 1, y - 1, z)]
+                                - this.prefix[this.index(x - 1, y, z - 1)]
+                                - this.prefix[this.index(x, y - 1, z - 1)]
+                                + this.prefix[this.index(x - 1, y - 1, z - 1)];
+                    }
+                }
+            }
+        }
+
+        protected int index(int x, int y, int z) {
+            return x + (this.sizeX + 1) * (y + (this.sizeY + 1) * z);
+        }
+
+        /**
+         * The canonical id at the passed position relative to the minimum corner of the search.
+         */
+        protected long idAt(int x, int y, int z) {
+            BlockState state = this.view.getBlockState(this.minX + x, this.minY + y, this.minZ + z);
+            return state == null ? UNLOADED : canonicalId(state);
+        }
+
+        /**
+         * Returns false if the pattern certainly does not lie at the passed origin facing the passed direction. A
+         * return of true must still be confirmed.
+         */
+        public boolean mayMatch(BlockPos origin, Direction facing) {
+            int facingIndex = facing.get2DDataValue();
+            int[] min = PatternHashMatcher.this.minOffsets[facingIndex];
+            int[] size = PatternHashMatcher.this.sizes[facingIndex];
+            int x0 = origin.getX() + min[0] - this.minX;
+            int y0 = origin.getY() + min[1] - this.minY;
+            int z0 = origin.getZ() + min[2] - this.minZ;
+            int x1 = x0 + size[0];
+            int y1 = y0 + size[1];
+            int z1 = z0 + size[2];
+            // outside the hashed box; let the caller find out the slow way
+            if (x0 < 0 || y0 < 0 || z0 < 0 || x1 > this.sizeX || y1 > this.sizeY || z1 > this.sizeZ) return true;
+
+            long hash = this.prefix[this.index(x1, y1, z1)]
+                    - this.prefix[this.index(x0, y1, z1)]
+                    - this.prefix[this.index(x1, y0, z1)]
+                    - this.prefix[this.index(x1, y1, z0)]
+                    + this.prefix[this.index(x0, y0, z1)]
+                    + this.prefix[this.index(x0, y1, z0)]
+                    + this.prefix[this.index(x1, y0, z0)]
+                    - this.prefix[this.index(x0, y0, z0)];
+
+            int[] wildcards = PatternHashMatcher.this.wildcardOffsets[facingIndex];
+            for (int i = 0; i < wildcards.length; i += 3) {
+                int x = x0 + wildcards[i];
+                int y = y0 + wildcards[i + 1];
+                int z = z0 + wildcards[i + 2];
+                hash -= this.idAt(x, y, z) * this.powersX[x] * this.powersY[y] * this.powersZ[z];
+            }
+
+            return hash == this.powersX[x0] * this.powersY[y0] * this.powersZ[z0] * PatternHashMatcher.this.expectedHashes[facingIndex];
+        }
+    }
+}
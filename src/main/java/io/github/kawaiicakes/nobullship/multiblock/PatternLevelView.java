@@ -0,0 +1,221 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicate;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.ChunkStatus;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A read-only view of the blocks in a box of a level, used while matching a <code>MultiblockPattern</code>. The
+ * chunk sections covering the box are resolved once on construction; reading a blockstate thereafter is a few
+ * shifts and a lookup in the section's <code>PalettedContainer</code>, with no hashing or allocation.
+ * <br><br>
+ * Positions in chunks which were not loaded at construction read as null. Positions outside the box fall back on
+ * the level itself. Block entities are never touched unless asked for.
+ * <br><br>
+ * A view created by <code>#snapshot</code> holds copies of the sections instead and never touches the level after
+ * construction, so it may be read from any thread. Such a view has no block entities and reads positions outside
+ * its box as null.
+ */
+public class PatternLevelView {
+    protected static final BlockState VOID_AIR = Blocks.VOID_AIR.defaultBlockState();
+    @Nullable
+    protected final LevelReader level;
+    protected final int minSectionX;
+    protected final int minSectionY;
+    protected final int minSectionZ;
+    protected final int sizeX;
+    protected final int sizeY;
+    protected final int sizeZ;
+    /**
+     * Whether the chunk of each column of sections in the box was loaded, indexed by <code>x + sizeX * z</code>
+     * relative to the minimum section.
+     */
+    protected final boolean[] loaded;
+    /**
+     * The chunk of each column of sections in the box, indexed as <code>#loaded</code>. Null for chunks which are
+     * not loaded and for every chunk of a snapshot.
+     */
+    protected final ChunkAccess[] chunks;
+    /**
+     * The blockstates of each section in the box, indexed by <code>x + sizeX * (y + sizeY * z)</code> relative to the
+     * minimum section. Null for sections of unloaded chunks and for sections outside the build height.
+     */
+    protected final PalettedContainer<BlockState>[] sections;
+    protected final BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+    /**
+     * The result of every NBT check done through this view, by block entity then predicate. Block entities are only
+     * checked once per predicate for as long as the view lives, however many candidate origins include them.
+     */
+    @Nullable
+    protected Map<BlockEntity, Reference2BooleanOpenHashMap<BlockInWorldPredicate>> blockEntityResults;
+    /**
+     * How many of each blockstate the loaded sections of this view hold, counted on first use.
+     */
+    @Nullable
+    protected Reference2IntOpenHashMap<BlockState> histogram;
+
+    /**
+     * Creates a view of the box bounded by the passed corners, inclusive.
+     */
+    public PatternLevelView(LevelReader level, BlockPos min, BlockPos max) {
+        this(level, min, max, false);
+    }
+
+    /**
+     * Creates a detached copy of the box bounded by the passed corners, inclusive. This must be called from the
+     * thread owning the level, but the returned view may then be read from any thread.
+     */
+    public static PatternLevelView snapshot(LevelReader level, BlockPos min, BlockPos max) {
+        return new PatternLevelView(level, min, max, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected PatternLevelView(LevelReader level, BlockPos min, BlockPos max, boolean snapshot) {
+        this.level = snapshot ? null : level;
+        this.minSectionX = SectionPos.blockToSectionCoord(Math.min(min.getX(), max.getX()));
+        this.minSectionY = SectionPos.blockToSectionCoord(Math.min(min.getY(), max.getY()));
+        this.minSectionZ = SectionPos.blockToSectionCoord(Math.min(min.getZ(), max.getZ()));
+        this.sizeX = SectionPos.blockToSectionCoord(Math.max(min.getX(), max.getX())) - this.minSectionX + 1;
+        this.sizeY = SectionPos.blockToSectionCoord(Math.max(min.getY(), max.getY())) - this.minSectionY + 1;
+        this.sizeZ = SectionPos.blockToSectionCoord(Math.max(min.getZ(), max.getZ())) - this.minSectionZ + 1;
+        this.loaded = new boolean[this.sizeX * this.sizeZ];
+        this.chunks = new ChunkAccess[this.sizeX * this.sizeZ];
+        this.sections = new PalettedContainer[this.sizeX * this.sizeY * this.sizeZ];
+
+        for (int x = 0; x < this.sizeX; x++) {
+            for (int z = 0; z < this.sizeZ; z++) {
+                ChunkAccess chunk = level.getChunk(this.minSectionX + x, this.minSectionZ + z, ChunkStatus.FULL, false);
+                if (chunk == null) continue;
+                this.loaded[x + this.sizeX * z] = true;
+                if (!snapshot) this.chunks[x + this.sizeX * z] = chunk;
+
+                LevelChunkSection[] chunkSections = chunk.getSections();
+                for (int y = 0; y < this.sizeY; y++) {
+                    int sectionIndex = chunk.getSectionIndexFromSectionY(this.minSectionY + y);
+                    if (sectionIndex < 0 || sectionIndex >= chunkSections.length) continue;
+                    PalettedContainer<BlockState> states = chunkSections[sectionIndex].getStates();
+                    this.sections[x + this.sizeX * (y + this.sizeY * z)] = snapshot ? states.copy() : states;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the <code>BlockState</code> at the given coordinates, or null if they lie in an unloaded chunk.
+     */
+    @Nullable
+    public BlockState getBlockState(int x, int y, int z) {
+        int sectionX = (x >> 4) - this.minSectionX;
+        int sectionY = (y >> 4) - this.minSectionY;
+        int sectionZ = (z >> 4) - this.minSectionZ;
+
+        if (sectionX < 0 || sectionX >= this.sizeX || sectionY < 0 || sectionY >= this.sizeY || sectionZ < 0 || sectionZ >= this.sizeZ) {
+            if (this.level == null) return null;
+            this.cursor.set(x, y, z);
+            //noinspection deprecation
+            if (!this.level.hasChunkAt(this.cursor)) return null;
+            return this.level.getBlockState(this.cursor);
+        }
+
+        if (!this.loaded[sectionX + this.sizeX * sectionZ]) return null;
+        PalettedContainer<BlockState> section = this.sections[sectionX + this.sizeX * (sectionY + this.sizeY * sectionZ)];
+        if (section == null) return VOID_AIR;
+        return section.get(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Returns the <code>BlockEntity</code> at the given coordinates, if any. This is considerably more expensive
+     * than <code>#getBlockState</code> and should only be called for positions where NBT matters. Always null for a
+     * snapshot.
+     */
+    @Nullable
+    public BlockEntity getBlockEntity(int x, int y, int z) {
+        if (this.level == null) return null;
+        this.cursor.set(x, y, z);
+        int sectionX = (x >> 4) - this.minSectionX;
+        int sectionZ = (z >> 4) - this.minSectionZ;
+
+        if (sectionX < 0 || sectionX >= this.sizeX || sectionZ < 0 || sectionZ >= this.sizeZ) {
+            return this.level.getBlockEntity(this.cursor);
+        }
+
+        ChunkAccess chunk = this.chunks[sectionX + this.sizeX * sectionZ];
+        if (chunk == null) return null;
+        return chunk.getBlockEntity(this.cursor);
+    }
+
+    /**
+     * Checks the NBT of the block entity at the given coordinates against the passed predicate, remembering the
+     * result for the rest of this view's life.
+     */
+    public boolean testBlockEntity(BlockInWorldPredicate predicate, int x, int y, int z) {
+        BlockEntity blockEntity = this.getBlockEntity(x, y, z);
+        if (blockEntity == null) return predicate.testBlockEntity(null);
+
+        if (this.blockEntityResults == null) this.blockEntityResults = new IdentityHashMap<>();
+        Reference2BooleanOpenHashMap<BlockInWorldPredicate> results = this.blockEntityResults.computeIfAbsent(blockEntity, key -> new Reference2BooleanOpenHashMap<>());
+        if (results.containsKey(predicate)) return results.getBoolean(predicate);
+
+        boolean result = predicate.testBlockEntity(blockEntity);
+        results.put(predicate, result);
+        return result;
+    }
+
+    /**
+     * Returns false if no loaded section of this view could hold a blockstate passing the filter. Only the palette
+     * of each section is consulted, so this is much cheaper than <code>#getHistogram</code>; a return of true means
+     * little, as a section with a large enough palette always returns true.
+     */
+    public boolean mayContain(Predicate<BlockState> filter) {
+        for (PalettedContainer<BlockState> section : this.sections) {
+            if (section != null && section.maybeHas(filter)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns how many of each blockstate the loaded sections of this view hold. Whole sections are counted, so the
+     * counts may include blocks outside the box this view was created with but never leave any inside it out.
+     * Do not modify the returned map.
+     */
+    public Reference2IntOpenHashMap<BlockState> getHistogram() {
+        if (this.histogram == null) {
+            Reference2IntOpenHashMap<BlockState> counts = new Reference2IntOpenHashMap<>();
+            for (PalettedContainer<BlockState> section : this.sections) {
+                if (section != null) section.count(counts::addTo);
+            }
+            this.histogram = counts;
+        }
+        return this.histogram;
+    }
+
+    /**
+     * The number of sections of loaded chunks within the build height covered by this view.
+     */
+    public int getLoadedSectionCount() {
+        int toReturn = 0;
+        for (PalettedContainer<BlockState> section : this.sections) {
+            if (section != null) toReturn++;
+        }
+        return toReturn;
+    }
+
+    public boolean isSnapshot() {
+        return this.level == null;
+    }
+}
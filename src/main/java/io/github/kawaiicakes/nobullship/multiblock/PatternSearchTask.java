@@ -0,0 +1,108 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits the candidates of <code>MultiblockPattern#locate</code> across a dedicated <code>ForkJoinPool</code>.
+ * Candidates are numbered <code>orientation + orientations * cell</code> and halved until few enough remain to test
+ * directly. The first task to find a match publishes it; every other task stops at its next candidate.
+ * <br><br>
+ * This relies on the view being a snapshot, which is readable from any thread, and on the predicates having no side
+ * effects. The only state the pattern itself mutates while matching is its rejection statistics, which tolerate
+ * lost updates.
+ */
+public class PatternSearchTask extends RecursiveAction {
+    /**
+     * How many candidates a task tests itself rather than splitting further.
+     */
+    protected static final int LEAF_SIZE = 32;
+    protected static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            PatternSearchTask::newThread,
+            null,
+            false
+    );
+
+    protected final MultiblockPattern pattern;
+    protected final PatternLevelView view;
+    protected final BlockPos pos;
+    protected final int[] candidateCells;
+    @Nullable
+    protected final PatternHashMatcher.Search hashSearch;
+    protected final boolean checkBlockEntities;
+    @Nullable
+    protected final MultiblockPattern.PartialMatch partial;
+    protected final AtomicReference<MultiblockPattern.Placement> found;
+    protected final int from;
+    protected final int to;
+
+    protected PatternSearchTask(MultiblockPattern pattern, PatternLevelView view, BlockPos pos, int[] candidateCells, @Nullable PatternHashMatcher.Search hashSearch, boolean checkBlockEntities, @Nullable MultiblockPattern.PartialMatch partial, AtomicReference<MultiblockPattern.Placement> found, int from, int to) {
+        this.pattern = pattern;
+        this.view = view;
+        this.pos = pos;
+        this.candidateCells = candidateCells;
+        this.hashSearch = hashSearch;
+        this.checkBlockEntities = checkBlockEntities;
+        this.partial = partial;
+        this.found = found;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Tests every orientation of the pattern with each of the passed cells at the passed position, returning the
+     * first placement found by any thread. Failed candidates are offered to <code>partial</code> if it is present.
+     * Blocks until the search is done.
+     */
+    @Nullable
+    public static MultiblockPattern.Placement search(MultiblockPattern pattern, PatternLevelView view, BlockPos pos, int[] candidateCells, @Nullable PatternHashMatcher.Search hashSearch, boolean checkBlockEntities, @Nullable MultiblockPattern.PartialMatch partial) {
+        if (!view.isSnapshot()) throw new IllegalArgumentException("Only snapshots may be searched in parallel!");
+
+        AtomicReference<MultiblockPattern.Placement> found = new AtomicReference<>();
+        int candidates = candidateCells.length * pattern.orientations.length;
+        POOL.invoke(new PatternSearchTask(pattern, view, pos, candidateCells, hashSearch, checkBlockEntities, partial, found, 0, candidates));
+        return found.get();
+    }
+
+    protected static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("NoBullship-Search-" + thread.getPoolIndex());
+        thread.setContextClassLoader(PatternSearchTask.class.getClassLoader());
+        return thread;
+    }
+
+    @Override
+    protected void compute() {
+        if (this.found.get() != null) return;
+
+        if (this.to - this.from > LEAF_SIZE) {
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(this.split(this.from, middle), this.split(middle, this.to));
+            return;
+        }
+
+        Direction[] orientations = this.pattern.orientations;
+        for (int candidate = this.from; candidate < this.to; candidate++) {
+            if (this.found.get() != null) return;
+
+            int cell = this.candidateCells[candidate / orientations.length];
+            Direction direction = orientations[candidate % orientations.length];
+            MultiblockPattern.Placement placement = this.pattern.tryCandidate(this.view, this.pos, cell, direction, this.hashSearch, this.checkBlockEntities, this.partial);
+            if (placement != null) {
+                this.found.compareAndSet(null, placement);
+                return;
+            }
+        }
+    }
+
+    protected PatternSearchTask split(int from, int to) {
+        return new PatternSearchTask(this.pattern, this.view, this.pos, this.candidateCells, this.hashSearch, this.checkBlockEntities, this.partial, this.found, from, to);
+    }
+}
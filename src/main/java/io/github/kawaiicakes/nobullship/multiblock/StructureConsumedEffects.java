@@ -0,0 +1,52 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.sounds.SoundSource;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.SoundType;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Plays the break effects of a consumed structure from the sample sent in a
+ * <code>ClientboundStructureConsumedPacket</code>. Each sampled block gets the particles it would have gotten from
+ * breaking it, but only the first block of each <code>SoundType</code> makes a sound, and no more than
+ * <code>#MAX_SOUNDS</code> sounds are played in all. Cells lying outside the pattern's dimensions are ignored.
+ */
+@OnlyIn(Dist.CLIENT)
+public class StructureConsumedEffects {
+    protected static final int MAX_SOUNDS = 4;
+
+    public static void play(BlockPos origin, Direction facing, int width, int height, int depth, int[] cells, int[] stateIds) {
+        ClientLevel level = Minecraft.getInstance().level;
+        if (level == null || width <= 0 || height <= 0 || depth <= 0) return;
+        long cellCount = (long) width * height * depth;
+
+        Set<SoundType> played = new HashSet<>();
+        int count = Math.min(cells.length, stateIds.length);
+        for (int n = 0; n < count; n++) {
+            BlockState state = Block.stateById(stateIds[n]);
+            if (state.isAir()) continue;
+
+            int cell = cells[n];
+            if (cell < 0 || cell >= cellCount) continue;
+            int i = cell % width;
+            int j = (cell / width) % height;
+            int k = cell / (width * height);
+            BlockPos pos = MultiblockPattern.translateAndRotate(origin, facing, Direction.UP, i, j, k);
+
+            SoundType soundType = state.getSoundType(level, pos, null);
+            if (played.size() < MAX_SOUNDS && played.add(soundType)) {
+                level.playLocalSound(pos, soundType.getBreakSound(), SoundSource.BLOCKS, (soundType.getVolume() + 1.0F) / 2.0F, soundType.getPitch() * 0.8F, false);
+            }
+            level.addDestroyBlockEffect(pos, state);
+        }
+    }
+}
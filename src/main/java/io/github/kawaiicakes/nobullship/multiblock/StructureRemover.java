@@ -0,0 +1,237 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import io.github.kawaiicakes.nobullship.api.BlockInWorldPredicate;
+import io.github.kawaiicakes.nobullship.network.ClientboundStructureConsumedPacket;
+import io.github.kawaiicakes.nobullship.network.NoBullshipPackets;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.SimpleWaterloggedBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.pattern.BlockInWorld;
+import net.minecraft.world.level.block.state.pattern.BlockPattern;
+import net.minecraft.world.level.block.state.properties.BlockStateProperties;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.lighting.LevelLightEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clears the blocks of a matched structure in bulk. <code>Level#setBlock</code> looks up the chunk, updates the
+ * shapes of all six neighbours and queues its own light check for every single block; most of that is wasted when
+ * the neighbours are about to be removed too.
+ * <br><br>
+ * Here, blocks are grouped by chunk section and written straight into it, doing only the per-block bookkeeping
+ * <code>LevelChunk#setBlockState</code> would: heightmaps, <code>onRemove</code> and <code>onPlace</code>, points of
+ * interest and a light check where the light properties actually change. Changes reach clients through
+ * <code>ServerChunkCache#blockChanged</code>, which sends one <code>ClientboundSectionBlocksUpdatePacket</code> per
+ * section at the end of the tick. Once everything is cleared, shape and neighbour updates are sent once to each
+ * position bordering the structure, wildcards included.
+ * <br><br>
+ * Blocks with a block entity go through <code>Level#setBlock</code> as before so the block entity is removed
+ * properly and containers still drop their contents.
+ * <br><br>
+ * Large structures may be cleared a batch at a time by the <code>DeconstructionScheduler</code> instead; states are
+ * read back from the level when cleared rather than taken from the match for this reason.
+ * <br><br>
+ * Rather than a break effect per block, nearby players get a single <code>ClientboundStructureConsumedPacket</code>
+ * holding at most <code>#MAX_EFFECT_SAMPLES</code> of the removed blocks, evenly spread through the structure.
+ */
+public class StructureRemover {
+    public static final int MAX_EFFECT_SAMPLES = 24;
+    /**
+     * How far from the edge of a structure players are sent its break effects; the same as a vanilla level event.
+     */
+    protected static final double EFFECT_RANGE = 64.0;
+
+    /**
+     * The positions of every cell of the match save for wildcards and cells already holding what they would be
+     * replaced with.
+     */
+    public static List<BlockPos> positionsOf(MultiblockPattern pattern, BlockPattern.BlockPatternMatch match) {
+        List<BlockPos> positions = new ArrayList<>();
+        for (int i = 0; i < pattern.getDepth(); ++i) {
+            for (int j = 0; j < pattern.getWidth(); ++j) {
+                for (int k = 0; k < pattern.getHeight(); ++k) {
+                    if (pattern.getPattern()[i][k][j].equals(BlockInWorldPredicate.WILDCARD)) continue;
+                    BlockInWorld blockInWorld = match.getBlock(j, k, i);
+                    BlockState state = blockInWorld.getState();
+                    if (state == replacementFor(state)) continue;
+
+                    positions.add(blockInWorld.getPos().immutable());
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Clears the given positions, replacing waterlogged blocks with water and everything else with air.
+     */
+    public static void clear(ServerLevel level, List<BlockPos> positions) {
+        LongOpenHashSet structure = new LongOpenHashSet(positions.size());
+        for (BlockPos pos : positions) {
+            structure.add(pos.asLong());
+        }
+        clear(level, positions, structure);
+    }
+
+    /**
+     * As above, for when the positions are only part of a structure. Positions in <code>structure</code> are left
+     * out of shape and neighbour updates, so nothing still waiting to be cleared reacts to the blocks around it
+     * disappearing and pops off as an item.
+     */
+    public static void clear(ServerLevel level, List<BlockPos> positions, LongSet structure) {
+        Long2ObjectLinkedOpenHashMap<IntArrayList> bySection = new Long2ObjectLinkedOpenHashMap<>();
+        for (int n = 0; n < positions.size(); n++) {
+            bySection.computeIfAbsent(SectionPos.asLong(positions.get(n)), key -> new IntArrayList()).add(n);
+        }
+
+        List<BlockPos> cleared = new ArrayList<>(positions.size());
+        List<BlockState> replacements = new ArrayList<>(positions.size());
+        List<BlockPos> withBlockEntities = new ArrayList<>();
+
+        LevelLightEngine lightEngine = level.getChunkSource().getLightEngine();
+        for (Long2ObjectMap.Entry<IntArrayList> entry : bySection.long2ObjectEntrySet()) {
+            long sectionKey = entry.getLongKey();
+            IntArrayList indices = entry.getValue();
+
+            LevelChunk chunk = level.getChunk(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+            int sectionIndex = chunk.getSectionIndexFromSectionY(SectionPos.y(sectionKey));
+            if (sectionIndex < 0 || sectionIndex >= chunk.getSections().length) continue;
+            LevelChunkSection section = chunk.getSection(sectionIndex);
+
+            boolean wasEmpty = section.hasOnlyAir();
+            BlockState[] oldStates = new BlockState[indices.size()];
+            BlockState[] newStates = new BlockState[indices.size()];
+            for (int n = 0; n < indices.size(); n++) {
+                BlockPos pos = positions.get(indices.getInt(n));
+                BlockState state = section.getBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+                if (state.hasBlockEntity()) {
+                    withBlockEntities.add(pos);
+                    continue;
+                }
+
+                BlockState replacement = replacementFor(state);
+                if (state == replacement) continue;
+
+                section.setBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, replacement);
+                for (Map.Entry<Heightmap.Types, Heightmap> heightmap : chunk.getHeightmaps()) {
+                    heightmap.getValue().update(pos.getX() & 15, pos.getY(), pos.getZ() & 15, replacement);
+                }
+                oldStates[n] = state;
+                newStates[n] = replacement;
+            }
+
+            boolean isEmpty = section.hasOnlyAir();
+            if (wasEmpty != isEmpty) lightEngine.updateSectionStatus(SectionPos.of(sectionKey), isEmpty);
+
+            for (int n = 0; n < indices.size(); n++) {
+                BlockState replacement = newStates[n];
+                if (replacement == null) continue;
+                BlockPos pos = positions.get(indices.getInt(n));
+                BlockState oldState = oldStates[n];
+
+                oldState.onRemove(level, pos, replacement, false);
+                replacement.onPlace(level, pos, oldState, false);
+                level.onBlockStateChange(pos, oldState, replacement);
+                if (affectsLight(level, pos, oldState, replacement)) lightEngine.checkBlock(pos);
+                level.getChunkSource().blockChanged(pos);
+
+                cleared.add(pos);
+                replacements.add(replacement);
+            }
+
+            chunk.setUnsaved(true);
+        }
+
+        for (BlockPos pos : withBlockEntities) {
+            BlockState replacement = replacementFor(level.getBlockState(pos));
+            if (!level.setBlock(pos, replacement, 2)) continue;
+            cleared.add(pos);
+            replacements.add(replacement);
+        }
+
+        LongOpenHashSet notified = new LongOpenHashSet();
+        BlockPos.MutableBlockPos neighbour = new BlockPos.MutableBlockPos();
+        for (int n = 0; n < cleared.size(); n++) {
+            BlockPos pos = cleared.get(n);
+            BlockState replacement = replacements.get(n);
+            for (Direction direction : Direction.values()) {
+                neighbour.setWithOffset(pos, direction);
+                if (structure.contains(neighbour.asLong())) continue;
+
+                level.neighborShapeChanged(direction.getOpposite(), replacement, neighbour, pos, 2, 511);
+                if (notified.add(neighbour.asLong())) level.neighborChanged(neighbour.immutable(), replacement.getBlock(), pos);
+            }
+        }
+    }
+
+    /**
+     * Sends a sample of the blocks removed from the match to every player within <code>#EFFECT_RANGE</code> of the
+     * structure.
+     */
+    public static void sendEffects(ServerLevel level, MultiblockPattern pattern, BlockPattern.BlockPatternMatch match) {
+        IntArrayList removedCells = new IntArrayList();
+        IntArrayList removedStateIds = new IntArrayList();
+        for (int i = 0; i < pattern.getDepth(); ++i) {
+            for (int j = 0; j < pattern.getWidth(); ++j) {
+                for (int k = 0; k < pattern.getHeight(); ++k) {
+                    if (pattern.getPattern()[i][k][j].equals(BlockInWorldPredicate.WILDCARD)) continue;
+                    BlockState state = match.getBlock(j, k, i).getState();
+                    if (state.isAir()) continue;
+
+                    removedCells.add(j + pattern.getWidth() * (k + pattern.getHeight() * i));
+                    removedStateIds.add(Block.getId(state));
+                }
+            }
+        }
+        if (removedCells.isEmpty()) return;
+
+        int stride = Math.max(1, (removedCells.size() + MAX_EFFECT_SAMPLES - 1) / MAX_EFFECT_SAMPLES);
+        IntArrayList sampledCells = new IntArrayList(MAX_EFFECT_SAMPLES);
+        IntArrayList sampledStateIds = new IntArrayList(MAX_EFFECT_SAMPLES);
+        for (int n = stride / 2; n < removedCells.size(); n += stride) {
+            sampledCells.add(removedCells.getInt(n));
+            sampledStateIds.add(removedStateIds.getInt(n));
+        }
+
+        ClientboundStructureConsumedPacket packet = new ClientboundStructureConsumedPacket(
+                match.getFrontTopLeft(), match.getForwards(),
+                pattern.getWidth(), pattern.getHeight(), pattern.getDepth(),
+                sampledCells.toIntArray(), sampledStateIds.toIntArray());
+
+        BlockPos centre = match.getBlock(match.getWidth() / 2, match.getHeight() / 2, match.getDepth() / 2).getPos();
+        double radius = EFFECT_RANGE + Math.max(match.getWidth(), Math.max(match.getHeight(), match.getDepth()));
+        NoBullshipPackets.sendToNear(packet, level, centre, radius);
+    }
+
+    public static BlockState replacementFor(BlockState state) {
+        if (state.getBlock() instanceof SimpleWaterloggedBlock && state.getValue(BlockStateProperties.WATERLOGGED).equals(true)) {
+            return Blocks.WATER.defaultBlockState();
+        }
+        return Blocks.AIR.defaultBlockState();
+    }
+
+    /**
+     * The condition under which <code>Level#setBlock</code> queues a light check.
+     */
+    protected static boolean affectsLight(ServerLevel level, BlockPos pos, BlockState oldState, BlockState newState) {
+        return oldState.getLightBlock(level, pos) != newState.getLightBlock(level, pos)
+                || oldState.getLightEmission(level, pos) != newState.getLightEmission(level, pos)
+                || oldState.useShapeForLightOcclusion()
+                || newState.useShapeForLightOcclusion();
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.kawaiicakes.nobullship.multiblock;
+
+import io.github.kawaiicakes.nobullship.Config;
+import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.pattern.BlockPattern;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.kawaiicakes.nobullship.Registry.SCHEMATIC_BLOCK;
+import static net.minecraft.world.level.block.state.properties.BlockStateProperties.HORIZONTAL_FACING;
+
+/**
+ * Remembers which cells of a recipe are satisfied around schematic blocks that have been clicked, so that clicking
+ * the same schematic block again only re-tests what may have changed since. Enabled by
+ * <code>Config#TRACK_STRUCTURES</code>; serverside and main thread only.
+ * <br><br>
+ * Block changes reported through <code>BlockEvent</code> mark the cells they touch as dirty. A query re-tests the
+ * dirty cells along with any cells that were unsatisfied last time, since not every block change fires an event.
+ * For the same reason, a structure the tracker believes to be complete is always checked in full with
+ * <code>MultiblockPattern#verify</code> before it is returned.
+ */
+public class StructureTracker {
+    protected static final int MAX_TRACKED = 256;
+    protected static final Map<ResourceKey<Level>, StructureTracker> TRACKERS = new HashMap<>();
+
+    /**
+     * Tracked structures by the packed position of their schematic block, least recently queried first.
+     */
+    protected final Long2ObjectLinkedOpenHashMap<TrackedStructure> bySchematicBlock = new Long2ObjectLinkedOpenHashMap<>();
+    /**
+     * Tracked structures by every <code>SectionPos</code> their bounds overlap, so block changes can find them.
+     */
+    protected final Long2ObjectOpenHashMap<List<TrackedStructure>> bySection = new Long2ObjectOpenHashMap<>();
+
+    public static StructureTracker get(ServerLevel level) {
+        return TRACKERS.computeIfAbsent(level.dimension(), key -> new StructureTracker());
+    }
+
+    public static void forget(LevelAccessor level) {
+        if (!(level instanceof ServerLevel serverLevel)) return;
+        TRACKERS.remove(serverLevel.dimension());
+    }
+
+    public static void clear() {
+        TRACKERS.clear();
+    }
+
+    public static void onBlockChanged(LevelAccessor level, BlockPos pos) {
+        if (!(level instanceof ServerLevel serverLevel) || !Config.TRACK_STRUCTURES.get()) return;
+        StructureTracker tracker = TRACKERS.get(serverLevel.dimension());
+        if (tracker == null) return;
+        tracker.markDirty(pos);
+    }
+
+    /**
+     * Equivalent to <code>MultiblockPattern#findExactWithReport</code> for the pattern of the passed recipe, but only
+     * re-tests cells which may have changed since the last query at this position. The report comes straight from
+     * the cells the tracker knows to be unsatisfied.
+     */
+    public MultiblockPattern.MatchResult findExact(ServerLevel level, MultiblockRecipe recipe, BlockPos pos) {
+        long key = pos.asLong();
+        BlockState blockAt = level.getBlockState(pos);
+        if (!blockAt.is(SCHEMATIC_BLOCK.get()) || recipe.schematicBlockOffset().length != 3) {
+            this.stopTracking(key);
+            return MultiblockPattern.MatchResult.failed(null);
+        }
+
+        Direction facing = blockAt.getValue(HORIZONTAL_FACING);
+        TrackedStructure tracked = this.bySchematicBlock.getAndMoveToLast(key);
+        if (tracked == null || tracked.recipe != recipe || tracked.placement.facing() != facing) {
+            this.stopTracking(key);
+            MultiblockPattern.Placement placement = MultiblockPattern.placementOfSchematicBlock(pos, facing, recipe.schematicBlockOffset());
+            tracked = this.startTracking(key, new TrackedStructure(recipe, recipe.recipe(), placement));
+        }
+
+        if (!tracked.update(tracked.pattern.createView(level, pos))) {
+            return MultiblockPattern.MatchResult.failed(tracked.pattern.report(tracked.placement, tracked.unsatisfied.toIntArray()));
+        }
+
+        BlockPattern.BlockPatternMatch match = tracked.pattern.verify(level, tracked.placement);
+        if (match == null) {
+            tracked.invalidate();
+            return MultiblockPattern.MatchResult.failed(null);
+        }
+        return MultiblockPattern.MatchResult.found(match);
+    }
+
+    public void markDirty(BlockPos pos) {
+        List<TrackedStructure> inSection = this.bySection.get(SectionPos.asLong(pos));
+        if (inSection == null) return;
+        for (TrackedStructure tracked : inSection) {
+            tracked.markDirty(pos);
+        }
+    }
+
+    protected TrackedStructure startTracking(long key, TrackedStructure tracked) {
+        if (this.bySchematicBlock.size() >= MAX_TRACKED) this.stopTracking(this.bySchematicBlock.firstLongKey());
+
+        this.bySchematicBlock.putAndMoveToLast(key, tracked);
+        for (long section : tracked.sections) {
+            this.bySection.computeIfAbsent(section, sectionKey -> new ArrayList<>()).add(tracked);
+        }
+        return tracked;
+    }
+
+    protected void stopTracking(long key) {
+        TrackedStructure tracked = this.bySchematicBlock.remove(key);
+        if (tracked == null) return;
+
+        for (long section : tracked.sections) {
+            List<TrackedStructure> inSection = this.bySection.get(section);
+            if (inSection == null) continue;
+            inSection.remove(tracked);
+            if (inSection.isEmpty()) this.bySection.remove(section);
+        }
+    }
+
+    protected static class TrackedStructure {
+        protected final MultiblockRecipe recipe;
+        protected final MultiblockPattern pattern;
+        protected final MultiblockPattern.Placement placement;
+        protected final long[] sections;
+        protected final IntOpenHashSet unsatisfied = new IntOpenHashSet();
+        protected final IntOpenHashSet dirty = new IntOpenHashSet();
+        protected boolean scanned = false;
+
+        protected TrackedStructure(MultiblockRecipe recipe, MultiblockPattern pattern, MultiblockPattern.Placement placement) {
+            this.recipe = recipe;
+            this.pattern = pattern;
+            this.placement = placement;
+
+            BlockPos firstCorner = placement.origin();
+            BlockPos secondCorner = pattern.positionOf(placement, pattern.getCellCount() - 1);
+            int minX = SectionPos.blockToSectionCoord(Math.min(firstCorner.getX(), secondCorner.getX()));
+            int minY = SectionPos.blockToSectionCoord(Math.min(firstCorner.getY(), secondCorner.getY()));
+            int minZ = SectionPos.blockToSectionCoord(Math.min(firstCorner.getZ(), secondCorner.getZ()));
+            int maxX = SectionPos.blockToSectionCoord(Math.max(firstCorner.getX(), secondCorner.getX()));
+            int maxY = SectionPos.blockToSectionCoord(Math.max(firstCorner.getY(), secondCorner.getY()));
+            int maxZ = SectionPos.blockToSectionCoord(Math.max(firstCorner.getZ(), secondCorner.getZ()));
+
+            this.sections = new long[(maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1)];
+            int index = 0;
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        this.sections[index++] = SectionPos.asLong(x, y, z);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Re-tests every cell which is dirty or was unsatisfied, or every cell if this has not been scanned yet.
+         * Returns whether every cell is now believed to be satisfied.
+         */
+        protected boolean update(PatternLevelView view) {
+            if (!this.scanned) {
+                this.unsatisfied.clear();
+                for (int cell = 0; cell < this.pattern.getCellCount(); cell++) {
+                    if (!this.pattern.testCell(view, this.placement, cell)) this.unsatisfied.add(cell);
+                }
+                this.dirty.clear();
+                this.scanned = true;
+                return this.unsatisfied.isEmpty();
+            }
+
+            this.dirty.addAll(this.unsatisfied);
+            for (IntIterator iterator = this.dirty.iterator(); iterator.hasNext(); ) {
+                int cell = iterator.nextInt();
+                if (this.pattern.testCell(view, this.placement, cell)) {
+                    this.unsatisfied.remove(cell);
+                } else {
+                    this.unsatisfied.add(cell);
+                }
+            }
+            this.dirty.clear();
+
+            return this.unsatisfied.isEmpty();
+        }
+
+        protected void markDirty(BlockPos pos) {
+            if (!this.scanned) return;
+            int cell = this.pattern.cellAt(this.placement, pos);
+            if (cell >= 0) this.dirty.add(cell);
+        }
+
+        protected void invalidate() {
+            this.scanned = false;
+        }
+
+        public int getSatisfiedCells() {
+            return this.pattern.getCellCount() - this.unsatisfied.size();
+        }
+    }
+}
@@ -159,6 +159,7 @@ public class NbtViewerScreen extends Screen {
                             assert stack.getTag() != null;
                             return stack.getTag().contains("BlockEntityTag");
                         })
+                        .map(ItemStack::copy)
                         .collect(Collectors.toList())
         );
 
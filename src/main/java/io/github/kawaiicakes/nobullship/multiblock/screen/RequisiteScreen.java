@@ -104,7 +104,8 @@ public class RequisiteScreen extends Screen {
         // written like this because for some reason IntelliJ states that resultRecipe.requisites() could be null
         // even after the null check... I'm paranoid, so I'll just acquiesce to its desires despite me being fairly certain that it's fine
         ImmutableList<ItemStack> multiblockReqs = resultRecipe.requisites();
-        if (multiblockReqs != null) requisiteBuilder.addAll(multiblockReqs);
+        // the recipe's own stacks are copied, as screens may change the stacks they show
+        if (multiblockReqs != null) multiblockReqs.forEach(stack -> requisiteBuilder.add(stack.copy()));
         
         this.requisites = requisiteBuilder.build();
 
@@ -0,0 +1,40 @@
+package io.github.kawaiicakes.nobullship.network;
+
+import io.github.kawaiicakes.nobullship.multiblock.MismatchHighlighter;
+import io.github.kawaiicakes.nobullship.multiblock.MultiblockPattern;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Tells a player which positions of a structure they tried to construct are wrong and what belongs there.
+ */
+public class ClientboundMismatchReportPacket {
+    protected final List<BlockPos> mismatches;
+    protected final List<ItemStack> expected;
+
+    public ClientboundMismatchReportPacket(MultiblockPattern.MismatchReport report) {
+        this.mismatches = report.mismatches();
+        this.expected = report.expected();
+    }
+
+    public ClientboundMismatchReportPacket(FriendlyByteBuf buf) {
+        this.mismatches = buf.readCollection(ArrayList::new, FriendlyByteBuf::readBlockPos);
+        this.expected = buf.readCollection(ArrayList::new, FriendlyByteBuf::readItem);
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeCollection(this.mismatches, FriendlyByteBuf::writeBlockPos);
+        buf.writeCollection(this.expected, FriendlyByteBuf::writeItem);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> MismatchHighlighter.show(this.mismatches, this.expected));
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.kawaiicakes.nobullship.network;
+
+import com.mojang.logging.LogUtils;
+import io.github.kawaiicakes.nobullship.Config;
+import io.github.kawaiicakes.nobullship.api.MultiblockRecipeManager;
+import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.network.NetworkEvent;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sent to every player after a <code>/reload</code> in place of a <code>ClientboundUpdateNoBullshipPacket</code>.
+ * Only carries the recipes which were added or changed by the reload and the ids of those which were removed;
+ * players who join later are sent every recipe as before.
+ */
+public class ClientboundRecipeDeltaPacket {
+    public static Logger LOGGER = LogUtils.getLogger();
+    public Map<ResourceLocation, MultiblockRecipe> changed;
+    public List<ResourceLocation> removed;
+    public List<ResourceLocation> whiteList;
+    public List<ResourceLocation> blackList;
+
+    public ClientboundRecipeDeltaPacket(MultiblockRecipeManager manager) {
+        this.changed = manager.getChangedSinceSync();
+        this.removed = manager.getRemovedSinceSync();
+
+        this.whiteList = Config.DROP_WHITELIST.get().stream().map(ResourceLocation::new).toList();
+        this.blackList = Config.DROP_BLACKLIST.get().stream().map(ResourceLocation::new).toList();
+    }
+
+    public ClientboundRecipeDeltaPacket(FriendlyByteBuf buffer) {
+        this.changed = ClientboundUpdateNoBullshipPacket.readRecipes(buffer);
+        this.removed = buffer.readCollection(ArrayList::new, FriendlyByteBuf::readResourceLocation);
+        this.whiteList = buffer.readCollection(ArrayList::new, FriendlyByteBuf::readResourceLocation);
+        this.blackList = buffer.readCollection(ArrayList::new, FriendlyByteBuf::readResourceLocation);
+    }
+
+    public void toBytes(FriendlyByteBuf buffer) {
+        ClientboundUpdateNoBullshipPacket.writeRecipes(buffer, this.changed);
+        buffer.writeCollection(this.removed, FriendlyByteBuf::writeResourceLocation);
+        buffer.writeCollection(this.whiteList, FriendlyByteBuf::writeResourceLocation);
+        buffer.writeCollection(this.blackList, FriendlyByteBuf::writeResourceLocation);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> contextSupplier) {
+        if (Minecraft.getInstance().player == null) return;
+        MultiblockRecipeManager.getInstance().applyRecipeDelta(this);
+        LOGGER.info("Received {} changed and {} removed No Bullship! recipes from the server", this.changed.size(), this.removed.size());
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.kawaiicakes.nobullship.network;
+
+import io.github.kawaiicakes.nobullship.multiblock.StructureConsumedEffects;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Stands in for the block break event of every block of a consumed structure. Carries where the structure was and
+ * which way it faced, along with a sample of its blocks as pairs of cell index and blockstate id; positions are
+ * worked out on the client from the pattern's dimensions.
+ */
+public class ClientboundStructureConsumedPacket {
+    protected final BlockPos origin;
+    protected final Direction facing;
+    protected final int width;
+    protected final int height;
+    protected final int depth;
+    protected final int[] cells;
+    protected final int[] stateIds;
+
+    public ClientboundStructureConsumedPacket(BlockPos origin, Direction facing, int width, int height, int depth, int[] cells, int[] stateIds) {
+        this.origin = origin;
+        this.facing = facing;
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.cells = cells;
+        this.stateIds = stateIds;
+    }
+
+    public ClientboundStructureConsumedPacket(FriendlyByteBuf buf) {
+        this.origin = buf.readBlockPos();
+        this.facing = Direction.from2DDataValue(buf.readByte());
+        this.width = buf.readVarInt();
+        this.height = buf.readVarInt();
+        this.depth = buf.readVarInt();
+        this.cells = buf.readVarIntArray();
+        this.stateIds = buf.readVarIntArray();
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeBlockPos(this.origin);
+        buf.writeByte(this.facing.get2DDataValue());
+        buf.writeVarInt(this.width);
+        buf.writeVarInt(this.height);
+        buf.writeVarInt(this.depth);
+        buf.writeVarIntArray(this.cells);
+        buf.writeVarIntArray(this.stateIds);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> StructureConsumedEffects.play(this.origin, this.facing, this.width, this.height, this.depth, this.cells, this.stateIds));
+    }
+}
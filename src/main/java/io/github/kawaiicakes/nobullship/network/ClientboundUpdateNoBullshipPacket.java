@@ -38,6 +38,41 @@ public class ClientboundUpdateNoBullshipPacket {
     public ClientboundUpdateNoBullshipPacket(FriendlyByteBuf buffer) {
         this.globalCooldownTime = buffer.readInt();
         this.maxGlobalCooldownTime = buffer.readInt();
+        this.recipes = readRecipes(buffer);
+        this.whiteList = buffer.readCollection(ArrayList::new, FriendlyByteBuf::readResourceLocation);
+        this.blackList = buffer.readCollection(ArrayList::new, FriendlyByteBuf::readResourceLocation);
+    }
+
+    public void toBytes(FriendlyByteBuf buffer) {
+        buffer.writeInt(this.globalCooldownTime);
+        buffer.writeInt(this.maxGlobalCooldownTime);
+        writeRecipes(buffer, this.recipes);
+        buffer.writeCollection(this.whiteList, FriendlyByteBuf::writeResourceLocation);
+        buffer.writeCollection(this.blackList, FriendlyByteBuf::writeResourceLocation);
+    }
+
+    /**
+     * Writes recipes as a single <code>CompoundTag</code> keyed by recipe id. Recipes which can't be serialized are
+     * logged and left out.
+     */
+    public static void writeRecipes(FriendlyByteBuf buffer, Map<ResourceLocation, MultiblockRecipe> recipes) {
+        CompoundTag serialized = new CompoundTag();
+        for (Map.Entry<ResourceLocation, MultiblockRecipe> entry : recipes.entrySet()) {
+            CompoundTag valueTag = entry.getValue().toNbt();
+            if (valueTag == null) {
+                LOGGER.error("Error parsing recipe {} due to malformed syntax!", entry.getKey());
+                continue;
+            }
+            serialized.put(entry.getKey().toString(), valueTag);
+        }
+
+        buffer.writeNbt(serialized);
+    }
+
+    /**
+     * Reads recipes written by <code>#writeRecipes</code>. Recipes which can't be parsed are logged and left out.
+     */
+    public static Map<ResourceLocation, MultiblockRecipe> readRecipes(FriendlyByteBuf buffer) {
         CompoundTag recipeTag = buffer.readAnySizeNbt();
 
         if (recipeTag == null) throw new IllegalArgumentException("Network does not contain recipes!");
@@ -66,27 +101,7 @@ public class ClientboundUpdateNoBullshipPacket {
 
             newRecipes.put(new ResourceLocation(key), fromNbt);
         }
-        this.recipes = newRecipes;
-        this.whiteList = buffer.readCollection(ArrayList::new, FriendlyByteBuf::readResourceLocation);
-        this.blackList = buffer.readCollection(ArrayList::new, FriendlyByteBuf::readResourceLocation);
-    }
-
-    public void toBytes(FriendlyByteBuf buffer) {
-        CompoundTag serialized = new CompoundTag();
-        for (Map.Entry<ResourceLocation, MultiblockRecipe> entry : this.recipes.entrySet()) {
-            CompoundTag valueTag = entry.getValue().toNbt();
-            if (valueTag == null) {
-                LOGGER.error("Error parsing recipe {} due to malformed syntax!", entry.getKey());
-                continue;
-            }
-            serialized.put(entry.getKey().toString(), valueTag);
-        }
-
-        buffer.writeInt(this.globalCooldownTime);
-        buffer.writeInt(this.maxGlobalCooldownTime);
-        buffer.writeNbt(serialized);
-        buffer.writeCollection(this.whiteList, FriendlyByteBuf::writeResourceLocation);
-        buffer.writeCollection(this.blackList, FriendlyByteBuf::writeResourceLocation);
+        return newRecipes;
     }
 
     public void handle(Supplier<NetworkEvent.Context> contextSupplier) {
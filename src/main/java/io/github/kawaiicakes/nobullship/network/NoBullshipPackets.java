@@ -1,6 +1,8 @@
 package io.github.kawaiicakes.nobullship.network;
 
+import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.fml.DistExecutor;
@@ -55,6 +57,24 @@ public class NoBullshipPackets {
                 .encoder(ClientboundUpdateNbtViewerPacket::toBytes)
                 .consumerMainThread(ClientboundUpdateNbtViewerPacket::handle)
                 .add();
+
+        net.messageBuilder(ClientboundMismatchReportPacket.class, id(), NetworkDirection.PLAY_TO_CLIENT)
+                .decoder(ClientboundMismatchReportPacket::new)
+                .encoder(ClientboundMismatchReportPacket::toBytes)
+                .consumerMainThread(ClientboundMismatchReportPacket::handle)
+                .add();
+
+        net.messageBuilder(ClientboundStructureConsumedPacket.class, id(), NetworkDirection.PLAY_TO_CLIENT)
+                .decoder(ClientboundStructureConsumedPacket::new)
+                .encoder(ClientboundStructureConsumedPacket::toBytes)
+                .consumerMainThread(ClientboundStructureConsumedPacket::handle)
+                .add();
+
+        net.messageBuilder(ClientboundRecipeDeltaPacket.class, id(), NetworkDirection.PLAY_TO_CLIENT)
+                .decoder(ClientboundRecipeDeltaPacket::new)
+                .encoder(ClientboundRecipeDeltaPacket::toBytes)
+                .consumerMainThread(NoBullshipPackets::handleOnClient)
+                .add();
     }
 
     protected static void handleOnClient(ClientboundUpdateNoBullshipPacket msg, Supplier<NetworkEvent.Context> event) {
@@ -63,6 +83,12 @@ public class NoBullshipPackets {
         event.get().setPacketHandled(true);
     }
 
+    protected static void handleOnClient(ClientboundRecipeDeltaPacket msg, Supplier<NetworkEvent.Context> event) {
+        event.get().enqueueWork(() ->
+                DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> msg.handle(event)));
+        event.get().setPacketHandled(true);
+    }
+
     public static <MSG> void sendToPlayer(MSG msg, @Nullable ServerPlayer player) {
         if (player == null) {
             INSTANCE.send(PacketDistributor.ALL.noArg(), msg);
@@ -71,6 +97,13 @@ public class NoBullshipPackets {
         INSTANCE.send(PacketDistributor.PLAYER.with(() -> player), msg);
     }
 
+    /**
+     * Sends the message to every player in the passed level within <code>radius</code> blocks of <code>pos</code>.
+     */
+    public static <MSG> void sendToNear(MSG msg, ServerLevel level, BlockPos pos, double radius) {
+        INSTANCE.send(PacketDistributor.NEAR.with(PacketDistributor.TargetPoint.p(pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5, radius, level.dimension())), msg);
+    }
+
     public static <MSG> void sendToServer(MSG msg) {
         INSTANCE.sendToServer(msg);
     }
@@ -2,6 +2,7 @@ package io.github.kawaiicakes.nobullship.schematic;
 
 import com.google.common.collect.ImmutableList;
 import io.github.kawaiicakes.nobullship.Config;
+import io.github.kawaiicakes.nobullship.api.ItemMultiset;
 import io.github.kawaiicakes.nobullship.api.MultiblockRecipeManager;
 import io.github.kawaiicakes.nobullship.api.multiblock.MultiblockRecipe;
 import io.github.kawaiicakes.nobullship.multiblock.MultiblockPattern;
@@ -36,7 +37,6 @@ import java.util.List;
 
 import static io.github.kawaiicakes.nobullship.NoBullship.NO_BULLSHIP_TAB;
 import static io.github.kawaiicakes.nobullship.Registry.SCHEMATIC;
-import static io.github.kawaiicakes.nobullship.schematic.SchematicRecipe.getSummedContents;
 import static net.minecraft.ChatFormatting.*;
 import static net.minecraft.nbt.Tag.*;
 
@@ -117,15 +117,13 @@ public class SchematicItem extends Item {
                 .map(ItemStack::of)
                 .toList();
 
-        List<ItemStack> requirements = getSummedContents(nonSumRequirements);
-        List<ItemStack> playerContents = getSummedContents(player.getInventory().items);
+        List<ItemStack> requirements = ItemMultiset.of(nonSumRequirements).toStacks();
+        ItemMultiset playerContents = ItemMultiset.of(player.getInventory().items);
 
         for (ItemStack requirement : requirements) {
             ChatFormatting colour = GREEN;
             String requisiteCharacter = "[✔] ";
-            if (playerContents.stream().noneMatch(content ->
-                ItemStack.isSameItemSameTags(content, requirement) && content.getCount() >= requirement.getCount()
-            )) {
+            if (playerContents.count(requirement) < requirement.getCount()) {
                 colour = RED;
                 requisiteCharacter = "[✘] ";
             }
@@ -245,6 +243,6 @@ public class SchematicItem extends Item {
                 .map(ItemStack::of)
                 .toList();
 
-        return ImmutableList.copyOf(getSummedContents(nonSumRequirements));
+        return ImmutableList.copyOf(ItemMultiset.of(nonSumRequirements).toStacks());
     }
 }
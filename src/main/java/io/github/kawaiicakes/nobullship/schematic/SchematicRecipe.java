@@ -3,6 +3,7 @@ package io.github.kawaiicakes.nobullship.schematic;
 import com.google.common.collect.ImmutableList;
 import com.google.gson.*;
 import com.mojang.logging.LogUtils;
+import io.github.kawaiicakes.nobullship.api.ItemMultiset;
 import io.github.kawaiicakes.nobullship.multiblock.block.MultiblockWorkshopBlockEntity;
 import net.minecraft.core.NonNullList;
 import net.minecraft.nbt.CompoundTag;
@@ -22,7 +23,6 @@ import static io.github.kawaiicakes.nobullship.NoBullship.MOD_ID;
 import static io.github.kawaiicakes.nobullship.Registry.SCHEMATIC;
 import static io.github.kawaiicakes.nobullship.multiblock.block.MultiblockWorkshopBlockEntity.EMPTY_SCHEM_SLOT;
 import static io.github.kawaiicakes.nobullship.multiblock.block.MultiblockWorkshopBlockEntity.SHAPELESS_SLOTS;
-import static net.minecraft.world.item.Items.AIR;
 
 public class SchematicRecipe implements Recipe<MultiblockWorkshopBlockEntity> {
     private final ResourceLocation recipeId;
@@ -30,6 +30,7 @@ public class SchematicRecipe implements Recipe<MultiblockWorkshopBlockEntity> {
     private final ImmutableList<Ingredient> shaped;
     private final ImmutableList<ItemStack> shapeless;
     private final @Nullable ImmutableList<ItemStack> requisites;
+    private final ItemMultiset shapelessRequirements;
     private final int maximumSchematicUsage;
     public final byte actualShapedWidth;
     public final byte actualShapedHeight;
@@ -39,6 +40,7 @@ public class SchematicRecipe implements Recipe<MultiblockWorkshopBlockEntity> {
         this.resultId = resultId;
         this.shaped = shaped;
         this.shapeless = shapeless;
+        this.shapelessRequirements = ItemMultiset.of(shapeless);
         this.maximumSchematicUsage = maximumSchematicUsage;
         this.actualShapedWidth = actualShapedWidth;
         this.actualShapedHeight = actualShapedHeight;
@@ -131,16 +133,12 @@ public class SchematicRecipe implements Recipe<MultiblockWorkshopBlockEntity> {
     public boolean shapelessMatches(MultiblockWorkshopBlockEntity workshop) {
         if (this.shapeless.isEmpty()) return true;
 
-        NonNullList<ItemStack> unsortedContents = NonNullList.createWithCapacity(0);
+        ItemMultiset contents = new ItemMultiset();
         for (int i: SHAPELESS_SLOTS) {
-            if (workshop.getItem(i).is(AIR)) continue;
-            unsortedContents.add(workshop.getItem(i));
+            contents.add(workshop.getItem(i));
         }
 
-        List<ItemStack> summedContents = getSummedContents(unsortedContents);
-        List<ItemStack> requirementContents = getSummedContents(this.getShapelessIngredients());
-
-        return compareSummedContents(requirementContents, summedContents);
+        return contents.containsAll(this.shapelessRequirements);
     }
 
     /**
@@ -283,34 +281,10 @@ public class SchematicRecipe implements Recipe<MultiblockWorkshopBlockEntity> {
      * Utility method for returning the summed contents of the <code>ItemStack</code>s in the passed
      * <code>List</code>. Useful for shapeless crafting checks. Does not modify stacks in the passed
      * <code>List</code>.
+     * @see ItemMultiset
      */
     public static List<ItemStack> getSummedContents(List<ItemStack> rawItems) {
-        NonNullList<ItemStack> copiedItems = NonNullList.createWithCapacity(rawItems.size());
-        for (ItemStack item : rawItems) {
-            copiedItems.add(item.copy());
-        }
-
-        List<ItemStack> toReturn = new ArrayList<>(rawItems.size());
-
-        for (ItemStack content : copiedItems) {
-            if (content.isEmpty()) continue;
-
-            int newCount = copiedItems.stream()
-                    .filter(standard -> ItemStack.isSameItemSameTags(standard, content))
-                    .mapToInt(ItemStack::getCount)
-                    .sum();
-
-            ItemStack newStack = content.copy();
-            newStack.setCount(newCount);
-            toReturn.add(newStack);
-
-            copiedItems.replaceAll((param) -> {
-                if (ItemStack.isSameItemSameTags(content, param)) return ItemStack.EMPTY;
-                return param;
-            });
-        }
-
-        return toReturn;
+        return ItemMultiset.of(rawItems).toStacks();
     }
 
     /**
@@ -322,24 +296,10 @@ public class SchematicRecipe implements Recipe<MultiblockWorkshopBlockEntity> {
      * @param container     A <code>List</code> representing the summed contents of a container whose contents
      *                      are to be scrutinized.
      * @return true if the container has all items in requirements equal to or greater than the associated count.
+     * @see ItemMultiset#containsAll(ItemMultiset)
      */
     public static boolean compareSummedContents(List<ItemStack> requirements, List<ItemStack> container) {
-        for (ItemStack requirement: requirements) {
-            ItemStack scrutinizedStack = container
-                    .stream()
-                    .filter(contentStandard -> ItemStack.isSameItemSameTags(contentStandard, requirement))
-                    .findAny()
-                    .orElse(null);
-            if (scrutinizedStack == null) return false;
-
-            int contentCount = container.stream()
-                    .filter(standard -> ItemStack.isSameItemSameTags(standard, requirement))
-                    .mapToInt(ItemStack::getCount)
-                    .sum();
-
-            if (contentCount < requirement.getCount()) return false;
-        }
-        return true;
+        return ItemMultiset.of(container).containsAll(ItemMultiset.of(requirements));
     }
 
     public static class Type implements RecipeType<SchematicRecipe> {